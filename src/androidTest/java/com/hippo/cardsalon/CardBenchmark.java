@@ -0,0 +1,306 @@
+package com.hippo.cardsalon;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.test.AndroidTestCase;
+import android.util.AttributeSet;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the card drawables and padding computation of every backend the device can run,
+ * sweeping radius, elevation and size. The results are written as JSON to
+ * {@link #OUTPUT_NAME} in the files dir of the test app, to be kept as a baseline.
+ * <p>
+ * It takes minutes, so it only runs with {@code -e benchmark true} passed to
+ * {@code am instrument}.
+ */
+public class CardBenchmark extends AndroidTestCase {
+
+    private static final String TAG = CardBenchmark.class.getSimpleName();
+
+    public static final String OUTPUT_NAME = "card-benchmark.json";
+
+    public static final String ARG_BENCHMARK = "benchmark";
+
+    // In dp
+    private static final float[] RADII = {0f, 2f, 8f};
+    private static final float[] ELEVATIONS = {0f, 2f, 8f};
+    private static final int[] SIZES = {48, 160, 400};
+
+    private static final int WARMUP = 200;
+    private static final int ITERATIONS = 2000;
+
+    private Canvas mCanvas;
+    private float mDensity;
+    private ColorStateList mBackgroundColor;
+    private ColorStateList mBoundColor;
+    private JSONArray mResults;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mDensity = getContext().getResources().getDisplayMetrics().density;
+        int max = Math.round(SIZES[SIZES.length - 1] * mDensity) + 1;
+        mCanvas = new Canvas(Bitmap.createBitmap(max, max, Bitmap.Config.ARGB_8888));
+        mBackgroundColor = ColorStateList.valueOf(Color.WHITE);
+        mBoundColor = ColorStateList.valueOf(Color.LTGRAY);
+        mResults = new JSONArray();
+    }
+
+    public void testBenchmark() throws Exception {
+        if (!CardTestRunner.getBooleanArgument(ARG_BENCHMARK)) {
+            Log.i(TAG, "Skipped, pass -e " + ARG_BENCHMARK + " true to run it");
+            return;
+        }
+
+        final Context context = getContext();
+
+        // Only initialize is timed, not building the view and helper
+        final CardHelper[] helper = new CardHelper[1];
+        record("CardHelper", "initialize", 0f, 0f, 0, measure(new Op() {
+            @Override
+            public void run(int i) {
+                helper[0] = new CardHelper(new CardView(context));
+            }
+        }, new Op() {
+            @Override
+            public void run(int i) {
+                helper[0].initialize(context, (AttributeSet) null);
+            }
+        }));
+
+        for (CardViewImpl impl : getImpls()) {
+            for (float radius : RADII) {
+                for (float elevation : ELEVATIONS) {
+                    benchmark(impl, radius * mDensity, elevation * mDensity);
+                }
+            }
+        }
+
+        for (float radius : RADII) {
+            // No shadow to compare without elevation
+            for (int i = 1; i < ELEVATIONS.length; i++) {
+                benchmarkShadow(radius * mDensity, ELEVATIONS[i] * mDensity);
+            }
+        }
+
+        for (float radius : RADII) {
+            benchmarkRing(radius * mDensity, mDensity);
+        }
+
+        writeResults();
+    }
+
+    private void benchmark(final CardViewImpl impl, final float radius, final float elevation)
+            throws JSONException {
+        final Context context = getContext();
+        final String name = impl.getClass().getSimpleName();
+        final CardHelper helper = new CardHelper(new CardView(context));
+
+        record(name, "initialize", radius, elevation, 0, measure(new Op() {
+            @Override
+            public void run(int i) {
+                impl.initialize(helper, context, mBackgroundColor, radius,
+                        mBoundColor, mDensity, elevation, 0f);
+            }
+        }));
+
+        record(name, "updatePadding", radius, elevation, 0, measure(new Op() {
+            @Override
+            public void run(int i) {
+                impl.updatePadding(helper);
+            }
+        }));
+
+        final Drawable drawable = helper.getBackgroundDrawable();
+        for (int dp : SIZES) {
+            final int size = Math.round(dp * mDensity);
+
+            // Bounds change every time, so every draw rebuilds the components
+            record(name, "buildComponents", radius, elevation, dp, measure(new Op() {
+                @Override
+                public void run(int i) {
+                    drawable.setBounds(0, 0, size - (i & 1), size);
+                    drawable.draw(mCanvas);
+                }
+            }));
+
+            drawable.setBounds(0, 0, size, size);
+            record(name, "draw", radius, elevation, dp, measure(new Op() {
+                @Override
+                public void run(int i) {
+                    drawable.draw(mCanvas);
+                }
+            }));
+        }
+    }
+
+    /**
+     * Compares the shadow engines on one drawable: per-card gradients, the gradient atlas
+     * and the blurred atlas. Records the time of a draw and its canvas operations.
+     */
+    private void benchmarkShadow(float radius, float elevation) throws JSONException {
+        int size = Math.round(SIZES[1] * mDensity);
+        String[] engines = {"gradient", "atlas", "blurred"};
+        for (String engine : engines) {
+            final RoundRectDrawableWithShadow drawable = new RoundRectDrawableWithShadow(
+                    RoundRectHelper.CANVAS, mBackgroundColor, radius, mBoundColor, mDensity,
+                    elevation);
+            if ("gradient".equals(engine)) {
+                drawable.setShadowQuality(ShadowQuality.FULL);
+            } else {
+                drawable.setShadowQuality(ShadowQuality.CACHED);
+                drawable.setShadowBlurred("blurred".equals(engine));
+            }
+            drawable.setBounds(0, 0, size, size);
+
+            String name = "shadow-" + engine;
+            record(name, "draw", radius, elevation, SIZES[1], measure(new Op() {
+                @Override
+                public void run(int i) {
+                    drawable.draw(mCanvas);
+                }
+            }));
+
+            CountingCanvas canvas = new CountingCanvas(
+                    Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888));
+            drawable.draw(canvas);
+            JSONObject result = new JSONObject();
+            result.put("backend", name);
+            result.put("op", "drawOps");
+            result.put("radius", radius);
+            result.put("elevation", elevation);
+            result.put("size", SIZES[1]);
+            result.put("count", canvas.getTotalCount());
+            result.put("counts", new JSONObject(canvas.getCounts()));
+            mResults.put(result);
+        }
+    }
+
+    /**
+     * Compares drawing the bound as an even-odd path, rebuilt for every card like a
+     * renderer drawing many sizes would, with {@link RoundRectHelper#drawRing}.
+     */
+    private void benchmarkRing(final float radius, float boundSize) throws JSONException {
+        int size = Math.round(SIZES[1] * mDensity);
+        final RectF outer = new RectF(0, 0, size, size);
+        final RectF inner = new RectF(outer);
+        inner.inset(boundSize, boundSize);
+        final float innerRadius = RoundRectHelper.getInnerRadius(radius, boundSize);
+        final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(Color.LTGRAY);
+        final Path path = new Path();
+
+        record("ring-path", "draw", radius, 0f, SIZES[1], measure(new Op() {
+            @Override
+            public void run(int i) {
+                path.reset();
+                path.setFillType(Path.FillType.EVEN_ODD);
+                path.addRoundRect(outer, radius, radius, Path.Direction.CW);
+                path.addRoundRect(inner, innerRadius, innerRadius, Path.Direction.CW);
+                mCanvas.drawPath(path, paint);
+            }
+        }));
+
+        record("ring-stroke", "draw", radius, 0f, SIZES[1], measure(new Op() {
+            @Override
+            public void run(int i) {
+                RoundRectHelper.CANVAS.drawRing(mCanvas, outer, inner, radius, paint);
+            }
+        }));
+    }
+
+    private static List<CardViewImpl> getImpls() {
+        List<CardViewImpl> impls = new ArrayList<>();
+        impls.add(new CardViewEclairMr1());
+        impls.add(new CardViewStatic(RoundRectHelper.SEVEN_OPS));
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            impls.add(new CardViewJellybeanMr1());
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            impls.add(new CardViewApi21());
+            impls.add(new CardViewApi21NoElevation());
+        }
+        return impls;
+    }
+
+    private static long measure(Op op) {
+        for (int i = 0; i < WARMUP; i++) {
+            op.run(i);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            op.run(i);
+        }
+        return (System.nanoTime() - start) / ITERATIONS;
+    }
+
+    /**
+     * Like {@link #measure(Op)}, running {@code setup} before every op out of the timing.
+     */
+    private static long measure(Op setup, Op op) {
+        for (int i = 0; i < WARMUP; i++) {
+            setup.run(i);
+            op.run(i);
+        }
+        long nanos = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            setup.run(i);
+            long start = System.nanoTime();
+            op.run(i);
+            nanos += System.nanoTime() - start;
+        }
+        return nanos / ITERATIONS;
+    }
+
+    private void record(String backend, String op, float radius, float elevation, int size,
+            long nanos) throws JSONException {
+        JSONObject result = new JSONObject();
+        result.put("backend", backend);
+        result.put("op", op);
+        result.put("radius", radius);
+        result.put("elevation", elevation);
+        result.put("size", size);
+        result.put("nsPerOp", nanos);
+        mResults.put(result);
+    }
+
+    private void writeResults() throws JSONException, IOException {
+        JSONObject json = new JSONObject();
+        json.put("sdk", Build.VERSION.SDK_INT);
+        json.put("device", Build.MODEL);
+        json.put("density", mDensity);
+        json.put("results", mResults);
+
+        File file = new File(getContext().getFilesDir(), OUTPUT_NAME);
+        FileOutputStream os = new FileOutputStream(file);
+        try {
+            os.write(json.toString(2).getBytes("UTF-8"));
+        } finally {
+            os.close();
+        }
+        Log.i(TAG, "Benchmark results written to " + file);
+    }
+
+    private interface Op {
+        void run(int i);
+    }
+}
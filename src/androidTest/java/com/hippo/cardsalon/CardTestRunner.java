@@ -0,0 +1,27 @@
+package com.hippo.cardsalon;
+
+import android.os.Bundle;
+import android.test.InstrumentationTestRunner;
+
+/**
+ * Keeps the arguments of {@code am instrument}, so tests can read them on every API level.
+ */
+public class CardTestRunner extends InstrumentationTestRunner {
+
+    private static Bundle sArguments = Bundle.EMPTY;
+
+    @Override
+    public void onCreate(Bundle arguments) {
+        if (arguments != null) {
+            sArguments = arguments;
+        }
+        super.onCreate(arguments);
+    }
+
+    /**
+     * Returns true if the argument is passed as {@code -e <key> true}.
+     */
+    static boolean getBooleanArgument(String key) {
+        return Boolean.parseBoolean(sArguments.getString(key));
+    }
+}
@@ -0,0 +1,159 @@
+package com.hippo.cardsalon;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Picture;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A software canvas counting draw operations by name. Operations the platform implements
+ * with other public ones are counted once.
+ */
+class CountingCanvas extends Canvas {
+
+    private final Bitmap mBitmap;
+    private final Map<String, Integer> mCounts = new TreeMap<>();
+    private int mDepth;
+
+    CountingCanvas(Bitmap bitmap) {
+        super(bitmap);
+        mBitmap = bitmap;
+    }
+
+    Bitmap getBitmap() {
+        return mBitmap;
+    }
+
+    Map<String, Integer> getCounts() {
+        return mCounts;
+    }
+
+    int getCount(String op) {
+        Integer count = mCounts.get(op);
+        return count != null ? count : 0;
+    }
+
+    int getTotalCount() {
+        int total = 0;
+        for (int count : mCounts.values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Clear the counts and the pixels.
+     */
+    void reset() {
+        mCounts.clear();
+        mBitmap.eraseColor(0);
+    }
+
+    private void enter(String op) {
+        if (mDepth++ == 0) {
+            Integer count = mCounts.get(op);
+            mCounts.put(op, count != null ? count + 1 : 1);
+        }
+    }
+
+    private void exit() {
+        mDepth--;
+    }
+
+    @Override
+    public int save() {
+        enter("save");
+        try {
+            return super.save();
+        } finally {
+            exit();
+        }
+    }
+
+    @Override
+    public void drawArc(RectF oval, float startAngle, float sweepAngle, boolean useCenter,
+            Paint paint) {
+        enter("drawArc");
+        try {
+            super.drawArc(oval, startAngle, sweepAngle, useCenter, paint);
+        } finally {
+            exit();
+        }
+    }
+
+    @Override
+    public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+        enter("drawRect");
+        try {
+            super.drawRect(left, top, right, bottom, paint);
+        } finally {
+            exit();
+        }
+    }
+
+    @Override
+    public void drawRect(RectF rect, Paint paint) {
+        enter("drawRect");
+        try {
+            super.drawRect(rect, paint);
+        } finally {
+            exit();
+        }
+    }
+
+    @Override
+    public void drawRoundRect(RectF rect, float rx, float ry, Paint paint) {
+        enter("drawRoundRect");
+        try {
+            super.drawRoundRect(rect, rx, ry, paint);
+        } finally {
+            exit();
+        }
+    }
+
+    @Override
+    public void drawPath(Path path, Paint paint) {
+        enter("drawPath");
+        try {
+            super.drawPath(path, paint);
+        } finally {
+            exit();
+        }
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, Rect src, RectF dst, Paint paint) {
+        enter("drawBitmap");
+        try {
+            super.drawBitmap(bitmap, src, dst, paint);
+        } finally {
+            exit();
+        }
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, Rect src, Rect dst, Paint paint) {
+        enter("drawBitmap");
+        try {
+            super.drawBitmap(bitmap, src, dst, paint);
+        } finally {
+            exit();
+        }
+    }
+
+    @Override
+    public void drawPicture(Picture picture) {
+        enter("drawPicture");
+        try {
+            super.drawPicture(picture);
+        } finally {
+            exit();
+        }
+    }
+}
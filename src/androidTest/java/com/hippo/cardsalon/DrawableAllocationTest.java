@@ -0,0 +1,79 @@
+package com.hippo.cardsalon;
+
+import android.content.res.ColorStateList;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.os.Debug;
+import android.test.AndroidTestCase;
+
+/**
+ * Checks that drawing, state changes and bounds changes allocate nothing once a drawable is set up.
+ */
+public class DrawableAllocationTest extends AndroidTestCase {
+
+    private static final int FRAMES = 10000;
+
+    private static final int[] STATE_PRESSED = {android.R.attr.state_pressed};
+    private static final int[] STATE_NONE = {};
+
+    private Canvas mCanvas;
+    private ColorStateList mBackgroundColor;
+    private ColorStateList mBoundColor;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mCanvas = new Canvas(Bitmap.createBitmap(200, 200, Bitmap.Config.ARGB_8888));
+        mBackgroundColor = new ColorStateList(new int[][]{STATE_PRESSED, STATE_NONE},
+                new int[]{Color.LTGRAY, Color.WHITE});
+        mBoundColor = ColorStateList.valueOf(Color.BLACK);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        ShadowCache.setMaxSize(ShadowCache.DEFAULT_MAX_SIZE);
+        super.tearDown();
+    }
+
+    public void testRoundRectDrawable() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return;
+        }
+        assertAllocationFree(new RoundRectDrawable(mBackgroundColor, 8f, mBoundColor, 2f));
+    }
+
+    public void testRoundRectDrawableWithShadow() {
+        assertAllocationFree(new RoundRectDrawableWithShadow(RoundRectHelper.CANVAS,
+                mBackgroundColor, 8f, mBoundColor, 2f, 4f));
+    }
+
+    public void testRoundRectDrawableWithShadowUncached() {
+        ShadowCache.setMaxSize(0);
+        assertAllocationFree(new RoundRectDrawableWithShadow(RoundRectHelper.CANVAS,
+                mBackgroundColor, 8f, mBoundColor, 2f, 4f));
+    }
+
+    private void assertAllocationFree(Drawable drawable) {
+        // The first frames build everything
+        runFrames(drawable, 2);
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        runFrames(drawable, FRAMES);
+        Debug.stopAllocCounting();
+
+        assertEquals(0, Debug.getThreadAllocCount());
+    }
+
+    private void runFrames(Drawable drawable, int frames) {
+        for (int i = 0; i < frames; i++) {
+            int offset = i % 2;
+            drawable.setBounds(offset, offset, 150 + offset, 100 + offset);
+            drawable.setState(offset == 0 ? STATE_PRESSED : STATE_NONE);
+            drawable.draw(mCanvas);
+        }
+    }
+}
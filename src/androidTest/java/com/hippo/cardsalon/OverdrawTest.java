@@ -0,0 +1,163 @@
+package com.hippo.cardsalon;
+
+import android.content.res.ColorStateList;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Outline;
+import android.graphics.PixelFormat;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.test.AndroidTestCase;
+
+/**
+ * Checks pixels are painted once, with translucent colors: a pixel painted twice comes out
+ * more opaque than its color.
+ */
+public class OverdrawTest extends AndroidTestCase {
+
+    private static final int SIZE = 100;
+    private static final float BOUND_SIZE = 4f;
+
+    private static final int BACKGROUND_COLOR = 0x800000ff;
+    private static final int BOUND_COLOR = 0x80ff0000;
+
+    private ColorStateList mBackgroundColor;
+    private ColorStateList mBoundColor;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mBackgroundColor = ColorStateList.valueOf(BACKGROUND_COLOR);
+        mBoundColor = ColorStateList.valueOf(BOUND_COLOR);
+    }
+
+    public void testRoundRectDrawable() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return;
+        }
+        assertPaintedOnce(new RoundRectDrawable(mBackgroundColor, 8f, mBoundColor, BOUND_SIZE));
+    }
+
+    public void testRoundRectDrawableWithShadow() {
+        assertPaintedOnce(new RoundRectDrawableWithShadow(RoundRectHelper.CANVAS,
+                mBackgroundColor, 8f, mBoundColor, BOUND_SIZE, 0f));
+    }
+
+    public void testRoundRectDrawableWithShadowSevenOpsNoRadius() {
+        assertPaintedOnce(new RoundRectDrawableWithShadow(RoundRectHelper.SEVEN_OPS,
+                mBackgroundColor, 0f, mBoundColor, BOUND_SIZE, 0f));
+    }
+
+    public void testRadiusUnderBoundSize() {
+        Drawable drawable = new RoundRectDrawableWithShadow(RoundRectHelper.CANVAS,
+                mBackgroundColor, BOUND_SIZE / 2, mBoundColor, BOUND_SIZE, 0f);
+        assertPaintedOnce(drawable);
+        // Where the corner pieces meet the sides
+        Bitmap bitmap = draw(drawable);
+        assertColor(BOUND_COLOR, bitmap.getPixel(1, 3));
+        assertColor(BOUND_COLOR, bitmap.getPixel(3, 1));
+        assertColor(BOUND_COLOR, bitmap.getPixel(3, 3));
+    }
+
+    public void testContentOpaque() {
+        RoundRectDrawableWithShadow drawable = new RoundRectDrawableWithShadow(
+                RoundRectHelper.CANVAS, mBackgroundColor, 8f, mBoundColor, BOUND_SIZE, 0f);
+        drawable.setContentOpaque(true);
+        Bitmap bitmap = draw(drawable);
+        assertColor(BOUND_COLOR, bitmap.getPixel(1, SIZE / 2));
+        assertEquals(Color.TRANSPARENT, bitmap.getPixel(SIZE / 2, SIZE / 2));
+    }
+
+    public void testOpacity() {
+        ColorStateList opaque = ColorStateList.valueOf(Color.WHITE);
+        Drawable drawable = new RoundRectDrawableWithShadow(RoundRectHelper.CANVAS,
+                opaque, 0f, opaque, BOUND_SIZE, 0f);
+        assertEquals(PixelFormat.OPAQUE, drawable.getOpacity());
+
+        drawable = new RoundRectDrawableWithShadow(RoundRectHelper.CANVAS,
+                opaque, 0f, mBoundColor, BOUND_SIZE, 0f);
+        assertEquals(PixelFormat.TRANSLUCENT, drawable.getOpacity());
+
+        drawable = new RoundRectDrawableWithShadow(RoundRectHelper.CANVAS,
+                opaque, 8f, opaque, BOUND_SIZE, 0f);
+        assertEquals(PixelFormat.TRANSLUCENT, drawable.getOpacity());
+
+        drawable = new RoundRectDrawableWithShadow(RoundRectHelper.CANVAS,
+                opaque, 0f, opaque, BOUND_SIZE, 4f);
+        assertEquals(PixelFormat.TRANSLUCENT, drawable.getOpacity());
+
+        // No shadow, but insets for the max elevation
+        RoundRectDrawableWithShadow inset = new RoundRectDrawableWithShadow(RoundRectHelper.CANVAS,
+                opaque, 0f, opaque, BOUND_SIZE, 0f);
+        inset.setMaxElevation(4f);
+        assertEquals(PixelFormat.TRANSLUCENT, inset.getOpacity());
+    }
+
+    public void testAlpha() {
+        ColorStateList opaque = ColorStateList.valueOf(Color.WHITE);
+        Drawable drawable = new RoundRectDrawableWithShadow(RoundRectHelper.CANVAS,
+                opaque, 0f, opaque, BOUND_SIZE, 0f);
+        drawable.setAlpha(0x80);
+        assertEquals(PixelFormat.TRANSLUCENT, drawable.getOpacity());
+        assertEquals(0x80, Color.alpha(draw(drawable).getPixel(SIZE / 2, SIZE / 2)), 1);
+
+        drawable.setAlpha(0);
+        assertEquals(PixelFormat.TRANSPARENT, drawable.getOpacity());
+
+        drawable.setAlpha(0xff);
+        assertEquals(PixelFormat.OPAQUE, drawable.getOpacity());
+    }
+
+    public void testAlphaStaticBitmap() {
+        ColorStateList opaque = ColorStateList.valueOf(Color.WHITE);
+        RoundRectDrawableWithShadow drawable = new RoundRectDrawableWithShadow(
+                RoundRectHelper.CANVAS, opaque, 0f, opaque, BOUND_SIZE, 0f);
+        drawable.setBitmapEnabled(true);
+        draw(drawable);
+        // The bitmap is rendered with opaque paints, the alpha only applies when drawn
+        drawable.setAlpha(0x80);
+        assertEquals(PixelFormat.TRANSLUCENT, drawable.getOpacity());
+        draw(drawable);
+        assertEquals(PixelFormat.TRANSLUCENT, drawable.getOpacity());
+        drawable.setBitmapEnabled(false);
+    }
+
+    public void testOutlineAlpha() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return;
+        }
+        Drawable drawable = new RoundRectDrawable(mBackgroundColor, 8f, mBoundColor, BOUND_SIZE);
+        drawable.setBounds(0, 0, SIZE, SIZE);
+        Outline outline = new Outline();
+        drawable.getOutline(outline);
+        assertEquals(1f, outline.getAlpha());
+
+        drawable.setAlpha(0x80);
+        drawable.getOutline(outline);
+        assertEquals(0x80 / 255f, outline.getAlpha());
+    }
+
+    private static Bitmap draw(Drawable drawable) {
+        Bitmap bitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        drawable.setBounds(0, 0, SIZE, SIZE);
+        drawable.draw(new Canvas(bitmap));
+        return bitmap;
+    }
+
+    private static void assertPaintedOnce(Drawable drawable) {
+        Bitmap bitmap = draw(drawable);
+        // The middle of the left bound and the center of the card
+        assertColor(BOUND_COLOR, bitmap.getPixel(1, SIZE / 2));
+        assertColor(BACKGROUND_COLOR, bitmap.getPixel(SIZE / 2, SIZE / 2));
+    }
+
+    private static void assertColor(int expected, int actual) {
+        // Premultiplied storage rounds a little
+        String message = Integer.toHexString(expected) + " != " + Integer.toHexString(actual);
+        assertTrue(message, Math.abs(Color.alpha(expected) - Color.alpha(actual)) <= 2);
+        assertTrue(message, Math.abs(Color.red(expected) - Color.red(actual)) <= 2);
+        assertTrue(message, Math.abs(Color.green(expected) - Color.green(actual)) <= 2);
+        assertTrue(message, Math.abs(Color.blue(expected) - Color.blue(actual)) <= 2);
+    }
+}
@@ -0,0 +1,279 @@
+package com.hippo.cardsalon;
+
+import android.content.res.ColorStateList;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Renders cards with every drawable and round rect strategy on a software canvas, and checks
+ * that the cheaper paths draw the pixels of the reference path with fewer operations.
+ * <p>
+ * Images and operation counts are written to {@link #OUTPUT_DIR} in the files dir of the test
+ * app. Images put into the {@code goldens/<sdk>} assets of the tests are compared against,
+ * so a change in pixels fails until the goldens are updated. Without goldens for the sdk,
+ * only the golden comparison is skipped and logged; the images written can be copied there.
+ */
+public class RenderingTest extends AndroidTestCase {
+
+    private static final String TAG = RenderingTest.class.getSimpleName();
+
+    public static final String OUTPUT_DIR = "card-rendering";
+    private static final String GOLDEN_DIR = "goldens";
+
+    private static final int WIDTH = 160;
+    private static final int HEIGHT = 120;
+
+    // In px
+    private static final float[] RADII = {0f, 8f};
+    private static final float[] BOUND_SIZES = {0f, 3f};
+    private static final float[] ELEVATIONS = {0f, 4f};
+
+    // Max channel difference of a similar pixel, and the share of pixels allowed to differ
+    private static final int TOLERANCE = 8;
+    private static final float MAX_DIFFERENT_PIXELS = 0.02f;
+
+    private ColorStateList mBackgroundColor;
+    private ColorStateList mBoundColor;
+    private JSONObject mCounts;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mBackgroundColor = ColorStateList.valueOf(Color.WHITE);
+        mBoundColor = ColorStateList.valueOf(0xff3f51b5);
+        mCounts = new JSONObject();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        ShadowCache.setMaxSize(ShadowCache.DEFAULT_MAX_SIZE);
+        super.tearDown();
+    }
+
+    private RoundRectDrawableWithShadow newDrawable(RoundRectHelper helper, float radius,
+            float boundSize, float elevation) {
+        return new RoundRectDrawableWithShadow(helper, mBackgroundColor, radius,
+                mBoundColor, boundSize, elevation);
+    }
+
+    private static String getName(float radius, float boundSize, float elevation) {
+        return "r" + Math.round(radius) + "_b" + Math.round(boundSize) + "_e" + Math.round(elevation);
+    }
+
+    public void testShadowAtlas() throws Exception {
+        for (float radius : RADII) {
+            for (float boundSize : BOUND_SIZES) {
+                String name = getName(radius, boundSize, ELEVATIONS[1]);
+
+                ShadowCache.setMaxSize(0);
+                CountingCanvas gradient = render("gradient_" + name,
+                        newDrawable(RoundRectHelper.CANVAS, radius, boundSize, ELEVATIONS[1]));
+                ShadowCache.setMaxSize(ShadowCache.DEFAULT_MAX_SIZE);
+                CountingCanvas atlas = render("atlas_" + name,
+                        newDrawable(RoundRectHelper.CANVAS, radius, boundSize, ELEVATIONS[1]));
+
+                assertSimilar(name, gradient.getBitmap(), atlas.getBitmap());
+                int ringPaths = boundSize > 0f && radius > 0f ? 1 : 0;
+                assertEquals(4 + ringPaths, gradient.getCount("drawPath"));
+                assertEquals(ringPaths, atlas.getCount("drawPath"));
+                // Four corners and four edges
+                assertEquals(8, atlas.getCount("drawBitmap"));
+                assertEquals(0, atlas.getCount("save"));
+            }
+        }
+        writeCounts("shadow");
+    }
+
+    public void testBlurredShadow() throws Exception {
+        for (float radius : RADII) {
+            for (float boundSize : BOUND_SIZES) {
+                String name = getName(radius, boundSize, ELEVATIONS[1]);
+                RoundRectDrawableWithShadow drawable =
+                        newDrawable(RoundRectHelper.CANVAS, radius, boundSize, ELEVATIONS[1]);
+                drawable.setShadowBlurred(true);
+                CountingCanvas blurred = render("blurred_" + name, drawable);
+
+                int ringPaths = boundSize > 0f && radius > 0f ? 1 : 0;
+                assertEquals(ringPaths, blurred.getCount("drawPath"));
+                // Four corners and four edges from one low resolution mask
+                assertEquals(8, blurred.getCount("drawBitmap"));
+                assertEquals(0, blurred.getCount("save"));
+            }
+        }
+        writeCounts("blurred-shadow");
+    }
+
+    public void testSevenOps() throws Exception {
+        for (float radius : RADII) {
+            for (float boundSize : BOUND_SIZES) {
+                for (float elevation : ELEVATIONS) {
+                    String name = getName(radius, boundSize, elevation);
+                    CountingCanvas canvas = render("canvas_" + name,
+                            newDrawable(RoundRectHelper.CANVAS, radius, boundSize, elevation));
+                    CountingCanvas sevenOps = render("seven_ops_" + name,
+                            newDrawable(RoundRectHelper.SEVEN_OPS, radius, boundSize, elevation));
+                    assertSimilar(name, canvas.getBitmap(), sevenOps.getBitmap());
+                    if (radius <= 0f) {
+                        // Both draw plain rects
+                        assertEquals(canvas.getCounts(), sevenOps.getCounts());
+                    }
+                }
+            }
+        }
+        writeCounts("round-rect-helper");
+    }
+
+    public void testStaticBitmap() throws Exception {
+        for (float radius : RADII) {
+            for (float elevation : ELEVATIONS) {
+                String name = getName(radius, BOUND_SIZES[1], elevation);
+                CountingCanvas direct = render("direct_" + name,
+                        newDrawable(RoundRectHelper.SEVEN_OPS, radius, BOUND_SIZES[1], elevation));
+                RoundRectDrawableWithShadow drawable =
+                        newDrawable(RoundRectHelper.SEVEN_OPS, radius, BOUND_SIZES[1], elevation);
+                drawable.setBitmapEnabled(true);
+                CountingCanvas cached = render("static_" + name, drawable);
+                drawable.setBitmapEnabled(false);
+
+                assertTrue(name, direct.getBitmap().sameAs(cached.getBitmap()));
+                assertEquals(1, cached.getTotalCount());
+                assertEquals(1, cached.getCount("drawBitmap"));
+            }
+        }
+        writeCounts("static-bitmap");
+    }
+
+    public void testRoundRectDrawable() throws Exception {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return;
+        }
+        for (float radius : RADII) {
+            for (float boundSize : BOUND_SIZES) {
+                String name = getName(radius, boundSize, 0f);
+                CountingCanvas withShadow = render("shadow_" + name,
+                        newDrawable(RoundRectHelper.CANVAS, radius, boundSize, 0f));
+                CountingCanvas api21 = render("api21_" + name,
+                        new RoundRectDrawable(mBackgroundColor, radius, mBoundColor, boundSize));
+                assertTrue(name, withShadow.getBitmap().sameAs(api21.getBitmap()));
+                assertEquals(withShadow.getCounts(), api21.getCounts());
+            }
+        }
+        writeCounts("api21");
+    }
+
+    /**
+     * Draws the drawable twice and returns the canvas of the second frame, as the first one
+     * builds everything. The image is compared with its golden.
+     */
+    private CountingCanvas render(String name, Drawable drawable) throws IOException, JSONException {
+        Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        CountingCanvas canvas = new CountingCanvas(bitmap);
+        drawable.setBounds(0, 0, WIDTH, HEIGHT);
+        drawable.draw(canvas);
+        canvas.reset();
+        drawable.draw(canvas);
+
+        mCounts.put(name, new JSONObject(canvas.getCounts()));
+        writeImage(name, bitmap);
+        Bitmap golden = readGolden(name);
+        if (golden != null) {
+            assertSimilar("golden " + name, golden, bitmap);
+        } else {
+            Log.w(TAG, "Golden comparison skipped, no " + getGoldenPath(name) + " for sdk " +
+                    Build.VERSION.SDK_INT + ". Copy it from " + getOutputDir());
+        }
+        return canvas;
+    }
+
+    private static void assertSimilar(String name, Bitmap expected, Bitmap actual) {
+        assertEquals(name, expected.getWidth(), actual.getWidth());
+        assertEquals(name, expected.getHeight(), actual.getHeight());
+
+        int width = expected.getWidth();
+        int height = expected.getHeight();
+        int[] expectedPixels = new int[width * height];
+        int[] actualPixels = new int[width * height];
+        expected.getPixels(expectedPixels, 0, width, 0, 0, width, height);
+        actual.getPixels(actualPixels, 0, width, 0, 0, width, height);
+
+        int different = 0;
+        for (int i = 0; i < expectedPixels.length; i++) {
+            int e = expectedPixels[i];
+            int a = actualPixels[i];
+            if (Math.abs(Color.alpha(e) - Color.alpha(a)) > TOLERANCE ||
+                    Math.abs(Color.red(e) - Color.red(a)) > TOLERANCE ||
+                    Math.abs(Color.green(e) - Color.green(a)) > TOLERANCE ||
+                    Math.abs(Color.blue(e) - Color.blue(a)) > TOLERANCE) {
+                different++;
+            }
+        }
+        assertTrue(name + ": " + different + " pixels differ",
+                different <= expectedPixels.length * MAX_DIFFERENT_PIXELS);
+    }
+
+    private File getOutputDir() {
+        File dir = new File(getContext().getFilesDir(), OUTPUT_DIR);
+        dir.mkdirs();
+        return dir;
+    }
+
+    private static String getGoldenPath(String name) {
+        return GOLDEN_DIR + "/" + Build.VERSION.SDK_INT + "/" + name + ".png";
+    }
+
+    private Bitmap readGolden(String name) {
+        InputStream is;
+        try {
+            is = getContext().getAssets().open(getGoldenPath(name));
+        } catch (IOException e) {
+            // No golden for the sdk yet
+            return null;
+        }
+        try {
+            return BitmapFactory.decodeStream(is);
+        } finally {
+            try {
+                is.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+        }
+    }
+
+    private void writeImage(String name, Bitmap bitmap) throws IOException {
+        FileOutputStream os = new FileOutputStream(new File(getOutputDir(), name + ".png"));
+        try {
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, os);
+        } finally {
+            os.close();
+        }
+    }
+
+    private void writeCounts(String name) throws JSONException, IOException {
+        JSONObject json = new JSONObject();
+        json.put("sdk", Build.VERSION.SDK_INT);
+        json.put("counts", mCounts);
+
+        File file = new File(getOutputDir(), name + ".json");
+        FileOutputStream os = new FileOutputStream(file);
+        try {
+            os.write(json.toString(2).getBytes("UTF-8"));
+        } finally {
+            os.close();
+        }
+        Log.i(TAG, "Rendering results written to " + file.getParent());
+    }
+}
@@ -0,0 +1,90 @@
+package com.hippo.cardsalon;
+
+import android.test.AndroidTestCase;
+
+/**
+ * Walks the automatic shadow quality policy through frame times.
+ */
+public class ShadowQualityTest extends AndroidTestCase {
+
+    private static final long BUDGET = ShadowQuality.DEFAULT_FRAME_BUDGET;
+    private static final long VSYNC = 16 * 1000 * 1000;
+
+    private ShadowQuality.DropPolicy mPolicy;
+    private long mTime;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mPolicy = new ShadowQuality.DropPolicy();
+        mTime = 1000;
+    }
+
+    private int frame(long delta, boolean fastScrolling) {
+        mTime += delta;
+        return mPolicy.onFrame(mTime, BUDGET, fastScrolling);
+    }
+
+    private void calmFrames(int count) {
+        for (int i = 0; i < count; i++) {
+            frame(VSYNC, false);
+        }
+    }
+
+    public void testFirstFrameNotTimed() {
+        assertEquals(0, frame(BUDGET * 10, false));
+        assertEquals(0, frame(VSYNC, false));
+    }
+
+    public void testSlowFrameDrops() {
+        frame(VSYNC, false);
+        assertEquals(1, frame(BUDGET + 1, false));
+    }
+
+    public void testRestoreAfterRestPeriod() {
+        frame(VSYNC, false);
+        frame(BUDGET + 1, false);
+
+        calmFrames(ShadowQuality.REST_FRAMES - 1);
+        assertEquals(1, mPolicy.getDrop());
+        assertFalse(mPolicy.isAtRest());
+
+        assertEquals(0, frame(VSYNC, false));
+        assertTrue(mPolicy.isAtRest());
+    }
+
+    public void testSlowFrameRestartsRestPeriod() {
+        frame(VSYNC, false);
+        frame(BUDGET + 1, false);
+        calmFrames(ShadowQuality.REST_FRAMES - 1);
+        frame(BUDGET + 1, false);
+
+        calmFrames(ShadowQuality.REST_FRAMES - 1);
+        assertEquals(1, mPolicy.getDrop());
+        calmFrames(1);
+        assertEquals(0, mPolicy.getDrop());
+    }
+
+    public void testFastScrollHoldsDrop() {
+        assertEquals(1, frame(VSYNC, true));
+        for (int i = 0; i < ShadowQuality.REST_FRAMES * 2; i++) {
+            assertEquals(1, frame(VSYNC, true));
+        }
+        calmFrames(ShadowQuality.REST_FRAMES);
+        assertEquals(0, mPolicy.getDrop());
+    }
+
+    public void testNotAtRestUntilCalm() {
+        frame(VSYNC, false);
+        assertFalse(mPolicy.isAtRest());
+        calmFrames(ShadowQuality.REST_FRAMES);
+        assertTrue(mPolicy.isAtRest());
+    }
+
+    public void testResetForgetsLastFrame() {
+        frame(VSYNC, false);
+        mPolicy.reset();
+        // A pause while asleep is not a slow frame
+        assertEquals(0, frame(BUDGET * 10, false));
+    }
+}
@@ -0,0 +1,128 @@
+package com.hippo.cardsalon;
+
+import android.content.res.ColorStateList;
+import android.graphics.Color;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.test.AndroidTestCase;
+
+/**
+ * Counts invalidations while the state of a card goes back and forth, like items of a
+ * scrolling list being pressed and released.
+ */
+public class StateChangeTest extends AndroidTestCase {
+
+    private static final int CHURN = 100;
+
+    private static final int[] STATE_PRESSED = {android.R.attr.state_pressed};
+    private static final int[] STATE_NONE = {};
+
+    private ColorStateList mStatefulColor;
+    private ColorStateList mSameColor;
+    private ColorStateList mSingleColor;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mStatefulColor = new ColorStateList(new int[][]{STATE_PRESSED, STATE_NONE},
+                new int[]{Color.LTGRAY, Color.WHITE});
+        // Stateful list, but every state resolves to the same color
+        mSameColor = new ColorStateList(new int[][]{STATE_PRESSED, STATE_NONE},
+                new int[]{Color.WHITE, Color.WHITE});
+        mSingleColor = ColorStateList.valueOf(Color.BLACK);
+    }
+
+    public void testSingleColor() {
+        Drawable drawable = new RoundRectDrawableWithShadow(RoundRectHelper.CANVAS,
+                mSingleColor, 8f, mSingleColor, 2f, 4f);
+        assertFalse(drawable.isStateful());
+        assertEquals(0, churn(drawable));
+    }
+
+    public void testStatefulColor() {
+        Drawable drawable = new RoundRectDrawableWithShadow(RoundRectHelper.CANVAS,
+                mStatefulColor, 8f, mSingleColor, 2f, 4f);
+        assertTrue(drawable.isStateful());
+        assertEquals(CHURN * 2, churn(drawable));
+    }
+
+    public void testStatefulSameColor() {
+        Drawable drawable = new RoundRectDrawableWithShadow(RoundRectHelper.CANVAS,
+                mSameColor, 8f, mSingleColor, 2f, 4f);
+        // Every probed state resolves to the same color
+        assertFalse(drawable.isStateful());
+        assertEquals(0, churn(drawable));
+    }
+
+    public void testRoundRectDrawable() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return;
+        }
+        Drawable drawable = new RoundRectDrawable(mSingleColor, 8f, mSingleColor, 2f);
+        assertFalse(drawable.isStateful());
+        assertEquals(0, churn(drawable));
+
+        drawable = new RoundRectDrawable(mStatefulColor, 8f, mSingleColor, 2f);
+        assertTrue(drawable.isStateful());
+        assertEquals(CHURN * 2, churn(drawable));
+    }
+
+    public void testBecomeStateful() {
+        CardView view = new CardView(getContext());
+        view.setCardBackgroundColor(mSingleColor);
+        view.setPressed(true);
+        assertFalse(view.getBackground().isStateful());
+
+        view.setCardBackgroundColor(mStatefulColor);
+        boolean pressed = false;
+        for (int state : view.getBackground().getState()) {
+            pressed |= state == android.R.attr.state_pressed;
+        }
+        assertTrue(pressed);
+    }
+
+    public void testSetSameColor() {
+        RoundRectDrawableWithShadow drawable = new RoundRectDrawableWithShadow(
+                RoundRectHelper.CANVAS, mSingleColor, 8f, mSingleColor, 2f, 4f);
+        InvalidateCounter counter = new InvalidateCounter();
+        drawable.setCallback(counter);
+        drawable.setColor(ColorStateList.valueOf(Color.BLACK));
+        drawable.setBoundColor(ColorStateList.valueOf(Color.BLACK));
+        assertEquals(0, counter.mCount);
+        drawable.setColor(ColorStateList.valueOf(Color.WHITE));
+        assertEquals(1, counter.mCount);
+    }
+
+    /**
+     * Returns the invalidations while pressing and releasing {@link #CHURN} times.
+     */
+    private static int churn(Drawable drawable) {
+        drawable.setState(STATE_NONE);
+        InvalidateCounter counter = new InvalidateCounter();
+        drawable.setCallback(counter);
+        for (int i = 0; i < CHURN; i++) {
+            drawable.setState(STATE_PRESSED);
+            drawable.setState(STATE_NONE);
+        }
+        drawable.setCallback(null);
+        return counter.mCount;
+    }
+
+    private static final class InvalidateCounter implements Drawable.Callback {
+
+        private int mCount;
+
+        @Override
+        public void invalidateDrawable(Drawable who) {
+            mCount++;
+        }
+
+        @Override
+        public void scheduleDrawable(Drawable who, Runnable what, long when) {
+        }
+
+        @Override
+        public void unscheduleDrawable(Drawable who, Runnable what) {
+        }
+    }
+}
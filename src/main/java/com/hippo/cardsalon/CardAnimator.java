@@ -0,0 +1,257 @@
+package com.hippo.cardsalon;
+
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.ValueAnimator;
+import android.content.res.ColorStateList;
+
+/**
+ * Animates corner radius, elevation and bound color of one card.
+ * <p>
+ * Animators and listeners are created once per card and reused. Frames only read the
+ * animated fraction, so no value is boxed.
+ * <p>
+ * If the card draws its own shadow, radius and elevation step through at most
+ * {@link #MAX_LEVELS} pixel levels, fewer if their shadows don't fit in half the
+ * {@link ShadowCache}. The shadows of all levels are put into the cache when the animation
+ * starts, so frames only look shadows up. Otherwise every frame gets its own value.
+ */
+final class CardAnimator {
+
+    // Upper bound of shadows rendered ahead for one animation
+    private static final int MAX_LEVELS = 16;
+
+    private final CardHelper mCardHelper;
+
+    private Track mRadiusTrack;
+    private Track mElevationTrack;
+    private ColorTrack mBoundColorTrack;
+
+    CardAnimator(CardHelper cardHelper) {
+        mCardHelper = cardHelper;
+    }
+
+    void animateRadius(float radius, long duration) {
+        if (mRadiusTrack == null) {
+            mRadiusTrack = new RadiusTrack();
+        }
+        mRadiusTrack.start(mCardHelper.getCardRadius(), radius, duration);
+    }
+
+    void animateElevation(float elevation, long duration) {
+        if (mElevationTrack == null) {
+            mElevationTrack = new ElevationTrack();
+        }
+        mElevationTrack.start(mCardHelper.getCardElevation(), elevation, duration);
+    }
+
+    void animateBoundColor(int from, int to, long duration) {
+        if (mBoundColorTrack == null) {
+            mBoundColorTrack = new ColorTrack();
+        }
+        mBoundColorTrack.start(from, to, duration);
+    }
+
+    void cancel() {
+        if (mRadiusTrack != null) {
+            mRadiusTrack.mAnimator.cancel();
+        }
+        if (mElevationTrack != null) {
+            mElevationTrack.mAnimator.cancel();
+        }
+        if (mBoundColorTrack != null) {
+            mBoundColorTrack.mAnimator.cancel();
+        }
+    }
+
+    private static int lerpColor(int from, int to, float fraction) {
+        int a = (from >>> 24) + Math.round(((to >>> 24) - (from >>> 24)) * fraction);
+        int r = ((from >> 16) & 0xff) + Math.round((((to >> 16) & 0xff) - ((from >> 16) & 0xff)) * fraction);
+        int g = ((from >> 8) & 0xff) + Math.round((((to >> 8) & 0xff) - ((from >> 8) & 0xff)) * fraction);
+        int b = (from & 0xff) + Math.round(((to & 0xff) - (from & 0xff)) * fraction);
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * Animates one float property through levels {@code from + k * step}, and lands
+     * exactly on the target at the end.
+     */
+    private abstract class Track extends AnimatorListenerAdapter
+            implements ValueAnimator.AnimatorUpdateListener {
+
+        final ValueAnimator mAnimator;
+
+        float mFrom;
+        float mTo;
+        float mStep;
+        private float mLevel;
+
+        Track() {
+            mAnimator = ValueAnimator.ofFloat(0f, 1f);
+            mAnimator.addUpdateListener(this);
+            mAnimator.addListener(this);
+        }
+
+        void start(float from, float to, long duration) {
+            mAnimator.cancel();
+            mFrom = from;
+            mTo = to;
+            int levels = Math.min(MAX_LEVELS, getShadowLevelBudget());
+            if (levels >= 2) {
+                mStep = Math.max(1f, (float) Math.ceil(Math.abs(to - from) / (levels - 1)));
+            } else {
+                mStep = 0f;
+            }
+            mLevel = from;
+            onStart();
+            mAnimator.setDuration(duration);
+            mAnimator.start();
+        }
+
+        float getLevel(int index) {
+            float level = mFrom + Math.signum(mTo - mFrom) * mStep * index;
+            return Math.abs(level - mFrom) < Math.abs(mTo - mFrom) ? level : mTo;
+        }
+
+        int getLevelCount() {
+            return (int) Math.ceil(Math.abs(mTo - mFrom) / mStep) + 1;
+        }
+
+        boolean isQuantized() {
+            return mStep != 0f;
+        }
+
+        @Override
+        public void onAnimationUpdate(ValueAnimator animation) {
+            float fraction = animation.getAnimatedFraction();
+            float level;
+            if (fraction >= 1f) {
+                level = mTo;
+            } else if (isQuantized()) {
+                level = getLevel(Math.round(Math.abs(mTo - mFrom) * fraction / mStep));
+            } else {
+                level = mFrom + (mTo - mFrom) * fraction;
+            }
+            if (level != mLevel) {
+                mLevel = level;
+                onLevel(level);
+            }
+        }
+
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            onEnd();
+        }
+
+        /**
+         * Returns how many shadows of the levels the cache has room for, 0 if the card
+         * doesn't draw its shadow.
+         */
+        abstract int getShadowLevelBudget();
+
+        abstract void onStart();
+
+        abstract void onLevel(float level);
+
+        abstract void onEnd();
+    }
+
+    private final class RadiusTrack extends Track {
+
+        @Override
+        int getShadowLevelBudget() {
+            return mCardHelper.getShadowLevelBudget(Math.max(mFrom, mTo),
+                    mCardHelper.getCardElevation());
+        }
+
+        @Override
+        void onStart() {
+            if (!isQuantized()) {
+                return;
+            }
+            float elevation = mCardHelper.getCardElevation();
+            for (int i = 0, n = getLevelCount(); i < n; i++) {
+                mCardHelper.prefetchShadow(getLevel(i), elevation);
+            }
+        }
+
+        @Override
+        void onLevel(float level) {
+            mCardHelper.setCardRadius(level);
+        }
+
+        @Override
+        void onEnd() {
+        }
+    }
+
+    private final class ElevationTrack extends Track {
+
+        @Override
+        int getShadowLevelBudget() {
+            return mCardHelper.getShadowLevelBudget(mCardHelper.getCardRadius(),
+                    Math.max(mFrom, mTo));
+        }
+
+        @Override
+        void onStart() {
+            if (isQuantized()) {
+                float radius = mCardHelper.getCardRadius();
+                for (int i = 0, n = getLevelCount(); i < n; i++) {
+                    mCardHelper.prefetchShadow(radius, getLevel(i));
+                }
+            }
+            // Lay out once for the whole range, not once per frame
+            mCardHelper.setLayoutElevation(Math.max(mFrom, mTo));
+        }
+
+        @Override
+        void onLevel(float level) {
+            mCardHelper.setAnimatedElevation(level);
+        }
+
+        @Override
+        void onEnd() {
+            mCardHelper.setLayoutElevation(mCardHelper.getCardElevation());
+        }
+    }
+
+    private final class ColorTrack extends AnimatorListenerAdapter
+            implements ValueAnimator.AnimatorUpdateListener {
+
+        final ValueAnimator mAnimator;
+
+        private int mFrom;
+        private int mTo;
+        private int mColor;
+
+        ColorTrack() {
+            mAnimator = ValueAnimator.ofFloat(0f, 1f);
+            mAnimator.addUpdateListener(this);
+            mAnimator.addListener(this);
+        }
+
+        void start(int from, int to, long duration) {
+            mAnimator.cancel();
+            mFrom = from;
+            mTo = to;
+            mColor = from;
+            mAnimator.setDuration(duration);
+            mAnimator.start();
+        }
+
+        @Override
+        public void onAnimationUpdate(ValueAnimator animation) {
+            int color = lerpColor(mFrom, mTo, animation.getAnimatedFraction());
+            if (color != mColor) {
+                mColor = color;
+                mCardHelper.setAnimatedBoundColor(color);
+            }
+        }
+
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            mCardHelper.setCardBoundColor(ColorStateList.valueOf(mColor));
+        }
+    }
+}
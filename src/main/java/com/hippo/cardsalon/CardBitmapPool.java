@@ -0,0 +1,130 @@
+package com.hippo.cardsalon;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bitmaps of static cards, in buckets of size rounded up to {@link #BUCKET_SIZE}.
+ * Cards of similar sizes, like the items of a list, share one bucket.
+ * <p>
+ * Free bitmaps count towards the max size, bitmaps beyond it are dropped. Bitmaps held by
+ * cards count towards the max in use size, cards beyond it get no bitmap and draw directly.
+ * Cards give their bitmap back when they are hidden or detached.
+ * Only touched on the UI thread.
+ */
+public final class CardBitmapPool {
+
+    public static final int DEFAULT_MAX_SIZE = 4 * 1024 * 1024;
+    public static final int DEFAULT_MAX_IN_USE_SIZE = 8 * 1024 * 1024;
+
+    private static final int BUCKET_SIZE = 32;
+
+    private static final Map<Integer, List<Bitmap>> sBuckets = new HashMap<>();
+    private static int sMaxSize = DEFAULT_MAX_SIZE;
+    private static int sSize;
+    private static int sMaxInUseSize = DEFAULT_MAX_IN_USE_SIZE;
+    private static int sInUseSize;
+
+    private CardBitmapPool() {
+    }
+
+    /**
+     * Set the max byte count of free bitmaps. Free bitmaps are dropped.
+     */
+    public static void setMaxSize(int maxSize) {
+        sMaxSize = maxSize;
+        clear();
+    }
+
+    public static int getMaxSize() {
+        return sMaxSize;
+    }
+
+    public static int getSize() {
+        return sSize;
+    }
+
+    /**
+     * Set the max byte count of bitmaps held by cards. Cards keep bitmaps they already hold.
+     */
+    public static void setMaxInUseSize(int maxInUseSize) {
+        sMaxInUseSize = maxInUseSize;
+    }
+
+    public static int getMaxInUseSize() {
+        return sMaxInUseSize;
+    }
+
+    public static int getInUseSize() {
+        return sInUseSize;
+    }
+
+    public static void clear() {
+        sBuckets.clear();
+        sSize = 0;
+    }
+
+    private static int bucketOf(int size) {
+        return (size + BUCKET_SIZE - 1) / BUCKET_SIZE;
+    }
+
+    private static Integer keyOf(int width, int height) {
+        return (bucketOf(width) << 16) | bucketOf(height);
+    }
+
+    /**
+     * Returns a bitmap at least as large as the size, or {@code null} if it would go over
+     * the max in use size. Pooled bitmaps keep their content.
+     */
+    static Bitmap obtain(int width, int height) {
+        int bucketWidth = bucketOf(width) * BUCKET_SIZE;
+        int bucketHeight = bucketOf(height) * BUCKET_SIZE;
+        // ARGB_8888
+        int byteCount = bucketWidth * bucketHeight * 4;
+        if (sInUseSize + byteCount > sMaxInUseSize) {
+            return null;
+        }
+
+        Bitmap bitmap;
+        List<Bitmap> bucket = sBuckets.get(keyOf(width, height));
+        if (bucket != null && !bucket.isEmpty()) {
+            bitmap = bucket.remove(bucket.size() - 1);
+            sSize -= bitmap.getByteCount();
+        } else {
+            bitmap = Bitmap.createBitmap(bucketWidth, bucketHeight, Bitmap.Config.ARGB_8888);
+        }
+        sInUseSize += bitmap.getByteCount();
+        return bitmap;
+    }
+
+    /**
+     * Give back a bitmap from {@link #obtain(int, int)}.
+     */
+    static void release(Bitmap bitmap) {
+        int byteCount = bitmap.getByteCount();
+        sInUseSize -= byteCount;
+        if (sSize + byteCount > sMaxSize) {
+            return;
+        }
+        Integer key = keyOf(bitmap.getWidth(), bitmap.getHeight());
+        List<Bitmap> bucket = sBuckets.get(key);
+        if (bucket == null) {
+            bucket = new ArrayList<>();
+            sBuckets.put(key, bucket);
+        }
+        bucket.add(bitmap);
+        sSize += byteCount;
+    }
+
+    /**
+     * Returns true if the bitmap is in the bucket of the size, so it can be kept for it.
+     */
+    static boolean fits(Bitmap bitmap, int width, int height) {
+        return bitmap.getWidth() == bucketOf(width) * BUCKET_SIZE &&
+                bitmap.getHeight() == bucketOf(height) * BUCKET_SIZE;
+    }
+}
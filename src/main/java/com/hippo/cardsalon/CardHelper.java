@@ -2,34 +2,105 @@ package com.hippo.cardsalon;
 
 import android.content.Context;
 import android.content.res.ColorStateList;
-import android.content.res.TypedArray;
-import android.graphics.Color;
 import android.graphics.drawable.Drawable;
+import android.os.AsyncTask;
 import android.os.Build;
 import android.util.AttributeSet;
 import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.concurrent.Executor;
 
 /**
  * Base on cardview-v7 22.2.0
  */
 public class CardHelper {
 
+    /**
+     * Always clip children to the card, like cardview-v7.
+     */
+    public static final int CLIP_MODE_ALWAYS = 0;
+    /**
+     * Never clip children, for content which stays inside the round corners.
+     */
+    public static final int CLIP_MODE_NEVER = 1;
+    /**
+     * Clip children only while one of them is laid out over a round corner.
+     */
+    public static final int CLIP_MODE_AUTO = 2;
+
     private static final CardViewImpl NO_ELEVATION_IMPL;
+    private static final CardViewImpl STATIC_IMPL;
     private static final CardViewImpl IMPL;
 
     static {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
             IMPL = new CardViewApi21();
-            NO_ELEVATION_IMPL = new CardViewJellybeanMr1();
+            NO_ELEVATION_IMPL = new CardViewApi21NoElevation();
+            // Drawing is cheap enough with elevation
+            STATIC_IMPL = IMPL;
         } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
             IMPL = new CardViewJellybeanMr1();
             NO_ELEVATION_IMPL = IMPL;
+            STATIC_IMPL = new CardViewStatic(RoundRectHelper.CANVAS);
         } else {
             IMPL = new CardViewEclairMr1();
             NO_ELEVATION_IMPL = IMPL;
+            STATIC_IMPL = new CardViewStatic(RoundRectHelper.SEVEN_OPS);
+        }
+    }
+
+    private static CardViewImpl getImpl(CardStyle style) {
+        if (style.isForceNoElevation()) {
+            return NO_ELEVATION_IMPL;
+        } else if (style.isStaticBackground()) {
+            return STATIC_IMPL;
+        } else {
+            return IMPL;
+        }
+    }
+
+    /**
+     * Render the shadows of cards with the styles in the background, so the first frame
+     * of those cards only looks the shadows up. The shadows are kept in the
+     * {@link ShadowCache} until it is cleared.
+     * <p>
+     * Only the shadow depends on the style alone, the rest of a card is cheap to lay out
+     * for its bounds, so no sizes are needed.
+     */
+    public static void prewarm(CardStyle... styles) {
+        prewarm(AsyncTask.THREAD_POOL_EXECUTOR, styles);
+    }
+
+    public static void prewarm(Executor executor, CardStyle... styles) {
+        // Read styles now, the array may be reused by the caller
+        final float[] shadows = new float[styles.length * 2];
+        final boolean[] blurred = new boolean[styles.length];
+        int count = 0;
+        for (CardStyle style : styles) {
+            CardViewImpl impl = getImpl(style);
+            int elevation = Math.round(style.getElevation());
+            if (impl.drawsShadow() && elevation > 0) {
+                // Shadow size like RoundRectDrawableWithShadow
+                shadows[count * 2] = style.getRadius();
+                shadows[count * 2 + 1] = elevation * 2;
+                blurred[count] = impl.blursShadow();
+                count++;
+            }
+        }
+        if (count == 0) {
+            return;
         }
-        IMPL.initStatic();
-        NO_ELEVATION_IMPL.initStatic();
+
+        final int shadowCount = count;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < shadowCount; i++) {
+                    ShadowCache.prewarm(shadows[i * 2], shadows[i * 2 + 1], blurred[i]);
+                }
+            }
+        });
     }
 
     private CardViewDelegate mDelegate;
@@ -37,17 +108,28 @@ public class CardHelper {
 
     private Drawable mBackgroundDrawable;
 
+    private CardStyle mStyle;
+    private CardMetrics mMetrics;
+
     private ColorStateList mBackgroundColor;
     private float mRadius;
     private ColorStateList mBoundColor;
     private float mBoundSize;
     private float mElevation;
+    private float mMaxElevation;
+    private boolean mContentOpaque;
+    private int mShadowQuality = ShadowQuality.DEFAULT;
+    private int mClipMode;
+    private boolean mSnapshotEnabled;
 
     private int mOriginalPaddingLeft;
     private int mOriginalPaddingTop;
     private int mOriginalPaddingRight;
     private int mOriginalPaddingBottom;
 
+    private Editor mEditor;
+    private CardAnimator mAnimator;
+
     public CardHelper(CardViewDelegate delegate) {
         mDelegate = delegate;
         if (!(delegate instanceof View)) {
@@ -56,26 +138,30 @@ public class CardHelper {
     }
 
     public void initialize(Context context, AttributeSet attrs) {
-        TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.CardHelper);
-
-        mImpl = a.getBoolean(R.styleable.CardHelper_forceNoElevation, false) ? NO_ELEVATION_IMPL : IMPL;
-        mBackgroundColor = a.getColorStateList(R.styleable.CardHelper_cardBackgroundColor);
-        if (mBackgroundColor == null) {
-            mBackgroundColor = ColorStateList.valueOf(a.getColor(R.styleable.CardHelper_cardBackgroundColor, Color.WHITE));
-        }
-        mRadius = a.getDimension(R.styleable.CardHelper_cardCornerRadius,
-                context.getResources().getDimension(R.dimen.default_card_corner_radius));
-        mBoundColor = a.getColorStateList(R.styleable.CardHelper_cardBoundColor);
-        if (mBoundColor == null) {
-            mBoundColor = ColorStateList.valueOf(a.getColor(R.styleable.CardHelper_cardBoundColor, Color.WHITE));
-        }
-        mBoundSize = a.getDimension(R.styleable.CardHelper_cardBoundSize, 0f);
-        mElevation = a.getDimension(R.styleable.CardHelper_cardElevation,
-                context.getResources().getDimension(R.dimen.default_card_elevation));
-        mImpl.initialize(this, context, mBackgroundColor, mRadius, mBoundColor, mBoundSize, mElevation);
-        initPadding();
+        initialize(context, CardStyleResolver.resolve(context, attrs));
+    }
 
-        a.recycle();
+    /**
+     * Initialize from a resolved style, without touching any attribute.
+     */
+    public void initialize(Context context, CardStyle style) {
+        mStyle = style;
+        mImpl = getImpl(style);
+        mBackgroundColor = style.getBackgroundColor();
+        mRadius = style.getRadius();
+        mBoundColor = style.getBoundColor();
+        mBoundSize = style.getBoundSize();
+        mElevation = style.getElevation();
+        mMaxElevation = style.getMaxElevation();
+        mClipMode = style.getClipMode();
+        mImpl.initialize(this, context, mBackgroundColor, mRadius, mBoundColor, mBoundSize,
+                mElevation, mMaxElevation);
+        mImpl.updateClip(this);
+        mMetrics = CardMetrics.sample(mImpl.getClass());
+        if (mMetrics != null) {
+            mImpl.setMetrics(this, mMetrics);
+        }
+        initPadding();
     }
 
     private void initPadding() {
@@ -100,6 +186,22 @@ public class CardHelper {
         return mBackgroundDrawable;
     }
 
+    /**
+     * Returns the style the card was initialized with. Setters after that do not change it.
+     */
+    public CardStyle getCardStyle() {
+        return mStyle;
+    }
+
+    /**
+     * Returns the metrics of the card, or {@code null} if it is not sampled.
+     *
+     * @see CardMetrics#setSamplingRate(float)
+     */
+    public CardMetrics getMetrics() {
+        return mMetrics;
+    }
+
     public void setPadding(int left, int top, int right, int bottom) {
         mOriginalPaddingLeft = left;
         mOriginalPaddingTop = top;
@@ -111,6 +213,22 @@ public class CardHelper {
         }
     }
 
+    /**
+     * Set the padding of the view, unless it is already set.
+     * Delegates may override setPadding, so don't rely on the view skipping the layout pass.
+     */
+    void applyPadding(int left, int top, int right, int bottom) {
+        View view = (View) mDelegate;
+        if (view.getPaddingLeft() == left && view.getPaddingTop() == top &&
+                view.getPaddingRight() == right && view.getPaddingBottom() == bottom) {
+            return;
+        }
+        mDelegate.setPadding(left, top, right, bottom);
+        if (mMetrics != null) {
+            mMetrics.onPaddingChange();
+        }
+    }
+
     int getOriginalPaddingLeft() {
         return mOriginalPaddingLeft;
     }
@@ -131,6 +249,9 @@ public class CardHelper {
         if (mRadius != radius) {
             mRadius = radius;
             mImpl.setCornerRadius(this, radius);
+            if (mClipMode == CLIP_MODE_AUTO) {
+                mImpl.updateClip(this);
+            }
         }
     }
 
@@ -140,8 +261,10 @@ public class CardHelper {
 
     public void setCardBackgroundColor(ColorStateList color) {
         if (mBackgroundColor != color) {
+            boolean wasStateful = mBackgroundDrawable.isStateful();
             mBackgroundColor = color;
             mImpl.setBackgroundColor(this, color);
+            updateDrawableState(wasStateful);
         }
     }
 
@@ -153,6 +276,7 @@ public class CardHelper {
         if (mBoundSize != size) {
             mBoundSize = size;
             mImpl.setBoundSize(this, size);
+            mImpl.updatePadding(this);
         }
     }
 
@@ -162,8 +286,20 @@ public class CardHelper {
 
     public void setCardBoundColor(ColorStateList color) {
         if (mBoundColor != color) {
+            boolean wasStateful = mBackgroundDrawable.isStateful();
             mBoundColor = color;
             mImpl.setBoundColor(this, color);
+            updateDrawableState(wasStateful);
+        }
+    }
+
+    /**
+     * The view only gives its state to a stateful background, so a background which just
+     * became stateful still resolves colors for no state.
+     */
+    private void updateDrawableState(boolean wasStateful) {
+        if (!wasStateful && mBackgroundDrawable.isStateful()) {
+            ((View) mDelegate).refreshDrawableState();
         }
     }
 
@@ -175,10 +311,350 @@ public class CardHelper {
         if (mElevation != elevation) {
             mElevation = elevation;
             mImpl.setElevation(this, elevation);
+            mImpl.updatePadding(this);
         }
     }
 
     public float getCardElevation() {
         return mElevation;
     }
+
+    /**
+     * Lay out the card for this elevation if it is larger than the current one.
+     * Elevation changes up to it only redraw the shadow, padding stays the same.
+     */
+    public void setCardMaxElevation(float maxElevation) {
+        if (mMaxElevation != maxElevation) {
+            mMaxElevation = maxElevation;
+            mImpl.setMaxElevation(this, maxElevation);
+            mImpl.updatePadding(this);
+        }
+    }
+
+    public float getCardMaxElevation() {
+        return mMaxElevation;
+    }
+
+    /**
+     * Hint that the content covers the whole card inside the bound, so the card skips
+     * filling it. Only set it if the content is opaque and the card has no padding of its own.
+     */
+    public void setCardContentOpaque(boolean contentOpaque) {
+        if (mContentOpaque != contentOpaque) {
+            mContentOpaque = contentOpaque;
+            mImpl.setContentOpaque(this, contentOpaque);
+        }
+    }
+
+    public boolean isCardContentOpaque() {
+        return mContentOpaque;
+    }
+
+    /**
+     * Set the {@link ShadowQuality} of the card, or {@link ShadowQuality#DEFAULT} to follow
+     * the default. Cards with the framework shadow ignore it.
+     */
+    public void setCardShadowQuality(int shadowQuality) {
+        if (shadowQuality < ShadowQuality.DEFAULT || shadowQuality > ShadowQuality.NONE) {
+            throw new IllegalArgumentException("Invalid shadow quality: " + shadowQuality);
+        }
+        if (mShadowQuality != shadowQuality) {
+            mShadowQuality = shadowQuality;
+            mImpl.setShadowQuality(this, shadowQuality);
+        }
+    }
+
+    public int getCardShadowQuality() {
+        return mShadowQuality;
+    }
+
+    /**
+     * Set how the card clips its children to the round rect, one of {@link #CLIP_MODE_ALWAYS},
+     * {@link #CLIP_MODE_NEVER} and {@link #CLIP_MODE_AUTO}. Clipping costs render thread time
+     * for every card, so skip it if children never reach the corners. Cards only clip from L on.
+     */
+    public void setCardClipMode(int clipMode) {
+        if (clipMode < CLIP_MODE_ALWAYS || clipMode > CLIP_MODE_AUTO) {
+            throw new IllegalArgumentException("Invalid clip mode: " + clipMode);
+        }
+        if (mClipMode != clipMode) {
+            mClipMode = clipMode;
+            mImpl.updateClip(this);
+        }
+    }
+
+    public int getCardClipMode() {
+        return mClipMode;
+    }
+
+    /**
+     * Let the card publish a {@link CardSnapshot} of its background on the next draw and
+     * after every change, so other threads can draw it with {@link #getCardSnapshot()}.
+     */
+    public void setCardSnapshotEnabled(boolean enabled) {
+        if (mSnapshotEnabled != enabled) {
+            mSnapshotEnabled = enabled;
+            mImpl.setSnapshotEnabled(this, enabled);
+        }
+    }
+
+    public boolean isCardSnapshotEnabled() {
+        return mSnapshotEnabled;
+    }
+
+    /**
+     * Returns the latest snapshot of the background, or {@code null} if snapshots are not
+     * enabled or the card wasn't drawn since. Safe from any thread once the card is initialized.
+     */
+    public CardSnapshot getCardSnapshot() {
+        return mImpl.getSnapshot(this);
+    }
+
+    /**
+     * Delegates call it from {@code onAttachedToWindow}, a static card renders its bitmap
+     * again on the next draw.
+     */
+    public void onAttachedToWindow() {
+        View view = (View) mDelegate;
+        mBackgroundDrawable.setVisible(view.getVisibility() == View.VISIBLE, false);
+    }
+
+    /**
+     * Delegates call it from {@code onDetachedFromWindow}, so a static card gives its bitmap
+     * back to the {@link CardBitmapPool}.
+     */
+    public void onDetachedFromWindow() {
+        mBackgroundDrawable.setVisible(false, false);
+    }
+
+    /**
+     * Delegates call it after laying out children, so {@link #CLIP_MODE_AUTO} can
+     * check them.
+     */
+    public void onLayout() {
+        if (mClipMode == CLIP_MODE_AUTO) {
+            mImpl.updateClip(this);
+        }
+    }
+
+    /**
+     * Returns true if children should be clipped for the clip mode.
+     */
+    boolean shouldClip() {
+        switch (mClipMode) {
+            case CLIP_MODE_NEVER:
+                return false;
+            case CLIP_MODE_AUTO:
+                return isChildOverCorner();
+            default:
+                return true;
+        }
+    }
+
+    private boolean isChildOverCorner() {
+        float r = mRadius;
+        if (r <= 0f) {
+            return false;
+        }
+        View view = (View) mDelegate;
+        if (!(view instanceof ViewGroup)) {
+            return true;
+        }
+        ViewGroup group = (ViewGroup) view;
+        int width = view.getWidth();
+        int height = view.getHeight();
+        for (int i = 0, n = group.getChildCount(); i < n; i++) {
+            View child = group.getChildAt(i);
+            if (child.getVisibility() == View.GONE) {
+                continue;
+            }
+            // The point of the child nearest to each corner of the card
+            float left = r - Math.max(child.getLeft(), 0);
+            float top = r - Math.max(child.getTop(), 0);
+            float right = Math.min(child.getRight(), width) - (width - r);
+            float bottom = Math.min(child.getBottom(), height) - (height - r);
+            if (isOutsideArc(left, top, r) || isOutsideArc(right, top, r) ||
+                    isOutsideArc(left, bottom, r) || isOutsideArc(right, bottom, r)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the point, as distances into the corner square from its inner edges,
+     * is outside the arc.
+     */
+    private static boolean isOutsideArc(float dx, float dy, float r) {
+        return dx > 0f && dy > 0f && dx * dx + dy * dy > r * r;
+    }
+
+    private CardAnimator getAnimator() {
+        if (mAnimator == null) {
+            mAnimator = new CardAnimator(this);
+        }
+        return mAnimator;
+    }
+
+    /**
+     * Animate the corner radius. The shadows the animation passes are rendered before it
+     * starts, so frames don't build shadows.
+     */
+    public void animateCardRadius(float radius, long duration) {
+        getAnimator().animateRadius(radius, duration);
+    }
+
+    /**
+     * Animate the elevation. The shadows the animation passes are rendered before it
+     * starts, and padding changes at most at the start and the end, not every frame.
+     */
+    public void animateCardElevation(float elevation, long duration) {
+        getAnimator().animateElevation(elevation, duration);
+    }
+
+    /**
+     * Animate the bound color from its current color. The bound color becomes a
+     * single color.
+     */
+    public void animateCardBoundColor(int color, long duration) {
+        int from = mBoundColor.getColorForState(((View) mDelegate).getDrawableState(),
+                mBoundColor.getDefaultColor());
+        getAnimator().animateBoundColor(from, color, duration);
+    }
+
+    /**
+     * Stop all card animations, properties stay where they are.
+     */
+    public void cancelCardAnimations() {
+        if (mAnimator != null) {
+            mAnimator.cancel();
+        }
+    }
+
+    void prefetchShadow(float radius, float elevation) {
+        mImpl.prefetchShadow(this, radius, elevation);
+    }
+
+    /**
+     * Returns how many shadows as large as the one of the radius and elevation fit in half
+     * the shadow cache, so an animation prefetching them doesn't evict its own levels.
+     * Returns 0 if the card doesn't draw its shadow.
+     */
+    int getShadowLevelBudget(float radius, float elevation) {
+        int shadowSize = Math.round(elevation) * 2;
+        if (!mImpl.drawsShadow() || shadowSize <= 0) {
+            return 0;
+        }
+        // Shadow size like RoundRectDrawableWithShadow
+        int byteCount = ShadowAtlas.getByteCount(radius, shadowSize, mImpl.blursShadow());
+        return ShadowCache.getMaxSize() / 2 / byteCount;
+    }
+
+    /**
+     * Set the elevation without updating padding.
+     */
+    void setAnimatedElevation(float elevation) {
+        mElevation = elevation;
+        mImpl.setElevation(this, elevation);
+    }
+
+    /**
+     * Lay out the card for the elevation, or for the max elevation if it is larger.
+     */
+    void setLayoutElevation(float elevation) {
+        mImpl.setMaxElevation(this, Math.max(mMaxElevation, elevation));
+        mImpl.updatePadding(this);
+    }
+
+    void setAnimatedBoundColor(int color) {
+        mImpl.setAnimatedBoundColor(this, color);
+    }
+
+    /**
+     * Start changing several properties at once. Nothing changes until
+     * {@link Editor#apply()}, which rebuilds, updates padding and invalidates only once.
+     * <p>
+     * The editor is reused, so only one edit can be in progress at a time.
+     */
+    public Editor edit() {
+        if (mEditor == null) {
+            mEditor = new Editor();
+        }
+        mEditor.reset();
+        return mEditor;
+    }
+
+    private void apply(Editor editor) {
+        boolean changed = mBackgroundColor != editor.mBackgroundColor ||
+                mRadius != editor.mRadius || mBoundColor != editor.mBoundColor;
+        boolean paddingChanged = mBoundSize != editor.mBoundSize ||
+                mElevation != editor.mElevation;
+        if (!changed && !paddingChanged) {
+            return;
+        }
+
+        boolean wasStateful = mBackgroundDrawable.isStateful();
+        mBackgroundColor = editor.mBackgroundColor;
+        mRadius = editor.mRadius;
+        mBoundColor = editor.mBoundColor;
+        mBoundSize = editor.mBoundSize;
+        mElevation = editor.mElevation;
+        mImpl.setProperties(this, mBackgroundColor, mRadius, mBoundColor, mBoundSize, mElevation);
+        updateDrawableState(wasStateful);
+        if (paddingChanged) {
+            mImpl.updatePadding(this);
+        }
+        if (mClipMode == CLIP_MODE_AUTO) {
+            mImpl.updateClip(this);
+        }
+    }
+
+    public final class Editor {
+
+        private ColorStateList mBackgroundColor;
+        private float mRadius;
+        private ColorStateList mBoundColor;
+        private float mBoundSize;
+        private float mElevation;
+
+        private Editor() {
+        }
+
+        private void reset() {
+            mBackgroundColor = CardHelper.this.mBackgroundColor;
+            mRadius = CardHelper.this.mRadius;
+            mBoundColor = CardHelper.this.mBoundColor;
+            mBoundSize = CardHelper.this.mBoundSize;
+            mElevation = CardHelper.this.mElevation;
+        }
+
+        public Editor setCardRadius(float radius) {
+            mRadius = radius;
+            return this;
+        }
+
+        public Editor setCardBackgroundColor(ColorStateList color) {
+            mBackgroundColor = color;
+            return this;
+        }
+
+        public Editor setCardBoundSize(float size) {
+            mBoundSize = size;
+            return this;
+        }
+
+        public Editor setCardBoundColor(ColorStateList color) {
+            mBoundColor = color;
+            return this;
+        }
+
+        public Editor setCardElevation(float elevation) {
+            mElevation = elevation;
+            return this;
+        }
+
+        public void apply() {
+            CardHelper.this.apply(this);
+        }
+    }
 }
@@ -0,0 +1,119 @@
+package com.hippo.cardsalon;
+
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Build;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewParent;
+
+/**
+ * Draws a card behind every item of a RecyclerView, so items need no {@link CardView}
+ * around them. Items are inset like the content of a {@link CardView}.
+ * <p>
+ * The shadow is always drawn by a {@link CardRenderer}, even on L, as there is no view
+ * to elevate. Shadows of all visible items are drawn in one pass before the cards, so
+ * neighbouring cards share the atlas and paint. Pressed and other states follow the
+ * drawable state of each item, and cards fade with the alpha of their item.
+ * <p>
+ * A change of an item alone doesn't redraw the RecyclerView, so decorations aren't drawn
+ * again. While the item animator runs, the RecyclerView is redrawn on every frame. Items
+ * changing their state or alpha otherwise must call {@link #invalidateItem(View)}, from
+ * {@code drawableStateChanged} for example.
+ * <p>
+ * RecyclerView is a provided dependency, apps using this class must include it.
+ */
+public class CardItemDecoration extends RecyclerView.ItemDecoration {
+
+    private final CardRenderer mRenderer;
+    private final Rect mInsets = new Rect();
+    // Bounds of visible children, four floats each
+    private float[] mBounds = new float[0];
+    // Alphas of visible children, from 0 to 255
+    private int[] mAlphas = new int[0];
+
+    public CardItemDecoration(CardStyle style) {
+        mRenderer = new CardRenderer(style);
+        mRenderer.getPadding(mInsets);
+    }
+
+    /**
+     * Redraw the card behind the item, after its drawable state or alpha changed.
+     */
+    public static void invalidateItem(View item) {
+        ViewParent parent = item.getParent();
+        if (parent instanceof RecyclerView) {
+            ((RecyclerView) parent).invalidate();
+        }
+    }
+
+    @Override
+    public void getItemOffsets(Rect outRect, View view, RecyclerView parent, RecyclerView.State state) {
+        outRect.set(mInsets);
+    }
+
+    @Override
+    public void onDraw(Canvas c, RecyclerView parent, RecyclerView.State state) {
+        final CardRenderer renderer = mRenderer;
+        final Rect insets = mInsets;
+        final int childCount = parent.getChildCount();
+        if (mBounds.length < childCount * 4) {
+            mBounds = new float[childCount * 4];
+            mAlphas = new int[childCount];
+        }
+        final float[] bounds = mBounds;
+        final int[] alphas = mAlphas;
+
+        int count = 0;
+        for (int i = 0; i < childCount; i++) {
+            View child = parent.getChildAt(i);
+            int alpha = getAlpha(child);
+            if (alpha == 0) {
+                continue;
+            }
+            alphas[count] = alpha;
+            int dx = Math.round(child.getTranslationX());
+            int dy = Math.round(child.getTranslationY());
+            int offset = count * 4;
+            bounds[offset] = child.getLeft() - insets.left + dx;
+            bounds[offset + 1] = child.getTop() - insets.top + dy;
+            bounds[offset + 2] = child.getRight() + insets.right + dx;
+            bounds[offset + 3] = child.getBottom() + insets.bottom + dy;
+            count++;
+        }
+
+        // Item animations fade and move items without redrawing the RecyclerView
+        RecyclerView.ItemAnimator animator = parent.getItemAnimator();
+        if (animator != null && animator.isRunning()) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                parent.postInvalidateOnAnimation();
+            } else {
+                parent.postInvalidate();
+            }
+        }
+
+        renderer.drawShadows(c, bounds, alphas, count);
+
+        count = 0;
+        for (int i = 0; i < childCount; i++) {
+            View child = parent.getChildAt(i);
+            if (getAlpha(child) == 0) {
+                continue;
+            }
+            int offset = count * 4;
+            renderer.drawCard(c, bounds[offset], bounds[offset + 1], bounds[offset + 2],
+                    bounds[offset + 3], child.getDrawableState(), alphas[count]);
+            count++;
+        }
+    }
+
+    /**
+     * Returns the alpha of the card of the child from 0 to 255, 0 if it isn't visible.
+     */
+    private static int getAlpha(View child) {
+        if (child.getVisibility() != View.VISIBLE) {
+            return 0;
+        }
+        return Math.round(child.getAlpha() * 255);
+    }
+}
@@ -0,0 +1,171 @@
+package com.hippo.cardsalon;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Counters of what one card costs. Off by default, set a sampling rate to
+ * collect them for that fraction of new cards. Cards not sampled only pay a null check.
+ * <p>
+ * Counters are updated on the UI thread, read them there too.
+ */
+public final class CardMetrics {
+
+    private static final Random sRandom = new Random();
+
+    private static float sSamplingRate;
+    private static Listener sListener;
+    private static final List<WeakReference<CardMetrics>> sCards = new ArrayList<>();
+    // Backend name to cumulative draw nanoseconds, in the first slot
+    private static final Map<String, long[]> sBackendDrawTimes = new HashMap<>();
+
+    private final String mBackend;
+    private final long[] mBackendDrawTime;
+
+    private long mRebuildCount;
+    private long mShaderAllocationCount;
+    private long mPaddingChangeCount;
+    private long mColorChangeCount;
+    private long mDrawCount;
+    private long mDrawTime;
+
+    private CardMetrics(String backend, long[] backendDrawTime) {
+        mBackend = backend;
+        mBackendDrawTime = backendDrawTime;
+    }
+
+    /**
+     * Set the fraction of new cards to collect metrics for, from 0 to 1. Default is 0.
+     */
+    public static void setSamplingRate(float samplingRate) {
+        sSamplingRate = samplingRate;
+    }
+
+    public static float getSamplingRate() {
+        return sSamplingRate;
+    }
+
+    public static void setListener(Listener listener) {
+        sListener = listener;
+    }
+
+    /**
+     * Pass the metrics of all sampled cards still alive to the listener.
+     */
+    public static void report() {
+        Listener listener = sListener;
+        if (listener == null) {
+            return;
+        }
+        for (Iterator<WeakReference<CardMetrics>> iterator = sCards.iterator(); iterator.hasNext();) {
+            CardMetrics metrics = iterator.next().get();
+            if (metrics == null) {
+                iterator.remove();
+            } else {
+                listener.onReport(metrics);
+            }
+        }
+    }
+
+    /**
+     * Returns the nanoseconds all sampled cards of the backend spent in draw.
+     */
+    public static long getBackendDrawTime(String backend) {
+        long[] drawTime = sBackendDrawTimes.get(backend);
+        return drawTime != null ? drawTime[0] : 0;
+    }
+
+    /**
+     * Returns new metrics for a card drawn by the impl class, or {@code null} if the card
+     * is not sampled.
+     */
+    static CardMetrics sample(Class<?> impl) {
+        float samplingRate = sSamplingRate;
+        if (samplingRate <= 0f || sRandom.nextFloat() >= samplingRate) {
+            return null;
+        }
+        // Drop cards gone since, or a list never reported grows forever
+        for (Iterator<WeakReference<CardMetrics>> iterator = sCards.iterator(); iterator.hasNext();) {
+            if (iterator.next().get() == null) {
+                iterator.remove();
+            }
+        }
+        String backend = impl.getSimpleName();
+        long[] backendDrawTime = sBackendDrawTimes.get(backend);
+        if (backendDrawTime == null) {
+            backendDrawTime = new long[1];
+            sBackendDrawTimes.put(backend, backendDrawTime);
+        }
+        CardMetrics metrics = new CardMetrics(backend, backendDrawTime);
+        sCards.add(new WeakReference<>(metrics));
+        return metrics;
+    }
+
+    void onRebuild() {
+        mRebuildCount++;
+    }
+
+    void onShaderAllocation(int count) {
+        mShaderAllocationCount += count;
+    }
+
+    void onPaddingChange() {
+        mPaddingChangeCount++;
+    }
+
+    void onColorChange() {
+        mColorChangeCount++;
+    }
+
+    void onDraw(long nanos) {
+        mDrawCount++;
+        mDrawTime += nanos;
+        mBackendDrawTime[0] += nanos;
+    }
+
+    /**
+     * Returns the simple class name of the {@code CardViewImpl} drawing the card.
+     */
+    public String getBackend() {
+        return mBackend;
+    }
+
+    public long getRebuildCount() {
+        return mRebuildCount;
+    }
+
+    public long getShaderAllocationCount() {
+        return mShaderAllocationCount;
+    }
+
+    /**
+     * Returns how many padding updates really changed the padding, so caused a layout pass.
+     */
+    public long getPaddingChangeCount() {
+        return mPaddingChangeCount;
+    }
+
+    public long getColorChangeCount() {
+        return mColorChangeCount;
+    }
+
+    public long getDrawCount() {
+        return mDrawCount;
+    }
+
+    /**
+     * Returns the nanoseconds spent in draw.
+     */
+    public long getDrawTime() {
+        return mDrawTime;
+    }
+
+    public interface Listener {
+        void onReport(CardMetrics metrics);
+    }
+}
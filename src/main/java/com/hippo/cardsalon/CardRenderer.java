@@ -0,0 +1,196 @@
+package com.hippo.cardsalon;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.Build;
+
+/**
+ * Draws many cards of one {@link CardStyle} without a view or a drawable per card.
+ * <p>
+ * Cards are given as bounds, the same bounds a card drawable would get, packed as
+ * left, top, right, bottom in a float array. All corner shadows are drawn first, then all
+ * edge shadows, then all cards, from one shared shadow atlas and without canvas transforms.
+ * <p>
+ * A renderer needs no context, so it can draw from any {@code View.onDraw} or drawable.
+ * Build the style with {@link CardStyle.Builder}, and share one renderer between all cards
+ * of the style. Only touched on the UI thread.
+ */
+public class CardRenderer {
+
+    private static final int[] STATE_DEFAULT = {};
+
+    private final CardStyle mStyle;
+    private final StateColor mBackgroundColor;
+    private final StateColor mBoundColor;
+    private final RoundRectHelper mRoundRectHelper;
+
+    private final float mRadius;
+    private final float mBoundSize;
+    // Shadow sizes, like RoundRectDrawableWithShadow
+    private final float mElevation;
+    private final float mLayoutElevation;
+
+    private final ShadowAtlas mShadowAtlas;
+
+    private final Paint mPaint;
+    private final Paint mBoundPaint;
+    private final Paint mShadowPaint;
+
+    private final RectF mCardRect = new RectF();
+    private final RectF mInnerRect = new RectF();
+    private final RectF mShadowRect = new RectF();
+    private final Rect mSrcRect = new Rect();
+    private final RectF mDstRect = new RectF();
+
+    public CardRenderer(CardStyle style) {
+        mStyle = style;
+        mBackgroundColor = new StateColor(style.getBackgroundColor());
+        mBoundColor = new StateColor(style.getBoundColor());
+        mRoundRectHelper = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1 ?
+                RoundRectHelper.CANVAS : RoundRectHelper.SEVEN_OPS;
+
+        mRadius = style.getRadius();
+        mBoundSize = style.getBoundSize();
+        mElevation = Math.round(style.getElevation()) * 2;
+        mLayoutElevation = Math.max(mElevation, Math.round(style.getMaxElevation()) * 2);
+
+        if (mElevation > 0f) {
+            ShadowAtlas atlas = ShadowCache.obtain(new ShadowCache.Key().set(mRadius, mElevation));
+            if (atlas == null) {
+                // Cache is disabled, keep one for this renderer
+                atlas = ShadowAtlas.render(mRadius, mElevation);
+            }
+            mShadowAtlas = atlas;
+        } else {
+            mShadowAtlas = null;
+        }
+
+        mPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
+        mBoundPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
+        mShadowPaint = new Paint(Paint.DITHER_FLAG);
+    }
+
+    public CardStyle getStyle() {
+        return mStyle;
+    }
+
+    /**
+     * Get the space between the bounds of a card and its content.
+     */
+    public void getPadding(Rect padding) {
+        RoundRectDrawableWithShadow.calculatePadding(mBoundSize, mLayoutElevation, padding);
+    }
+
+    /**
+     * Draw shadows and cards in the default state.
+     */
+    public void draw(Canvas canvas, float[] bounds, int count) {
+        drawShadows(canvas, bounds, count);
+        setState(STATE_DEFAULT, 0xff);
+        for (int i = 0; i < count; i++) {
+            int offset = i * 4;
+            drawCardOnly(canvas, bounds[offset], bounds[offset + 1],
+                    bounds[offset + 2], bounds[offset + 3]);
+        }
+    }
+
+    /**
+     * Draw one card with its shadow, in the default state.
+     */
+    public void draw(Canvas canvas, float left, float top, float right, float bottom) {
+        draw(canvas, left, top, right, bottom, STATE_DEFAULT);
+    }
+
+    /**
+     * Draw one card with its shadow, in the state.
+     */
+    public void draw(Canvas canvas, float left, float top, float right, float bottom,
+            int[] state) {
+        if (mShadowAtlas != null) {
+            RoundRectDrawableWithShadow.calculateRects(left, top, right, bottom,
+                    mElevation, mLayoutElevation, mCardRect, mShadowRect);
+            mShadowAtlas.draw(canvas, mShadowRect.left, mShadowRect.top, mShadowRect.right,
+                    mShadowRect.bottom, mShadowPaint, mSrcRect, mDstRect);
+        }
+        drawCard(canvas, left, top, right, bottom, state);
+    }
+
+    public void drawShadows(Canvas canvas, float[] bounds, int count) {
+        drawShadows(canvas, bounds, null, count);
+    }
+
+    /**
+     * Draw the shadows of the cards, each with its alpha from 0 to 255.
+     *
+     * @param alphas one alpha for each card, or {@code null} for opaque shadows
+     */
+    public void drawShadows(Canvas canvas, float[] bounds, int[] alphas, int count) {
+        final ShadowAtlas atlas = mShadowAtlas;
+        if (atlas == null) {
+            return;
+        }
+        final RectF shadowRect = mShadowRect;
+        final Paint paint = mShadowPaint;
+        for (int i = 0; i < count; i++) {
+            if (alphas != null) {
+                paint.setAlpha(alphas[i]);
+            }
+            calculateRects(bounds, i * 4);
+            atlas.drawCorners(canvas, shadowRect.left, shadowRect.top, shadowRect.right,
+                    shadowRect.bottom, paint, mSrcRect, mDstRect);
+        }
+        for (int i = 0; i < count; i++) {
+            if (alphas != null) {
+                paint.setAlpha(alphas[i]);
+            }
+            calculateRects(bounds, i * 4);
+            atlas.drawEdges(canvas, shadowRect.left, shadowRect.top, shadowRect.right,
+                    shadowRect.bottom, paint, mSrcRect, mDstRect);
+        }
+        paint.setAlpha(0xff);
+    }
+
+    /**
+     * Draw one card without its shadow, in the state.
+     */
+    public void drawCard(Canvas canvas, float left, float top, float right, float bottom,
+            int[] state) {
+        drawCard(canvas, left, top, right, bottom, state, 0xff);
+    }
+
+    /**
+     * Draw one card without its shadow, in the state, with the alpha from 0 to 255.
+     */
+    public void drawCard(Canvas canvas, float left, float top, float right, float bottom,
+            int[] state, int alpha) {
+        setState(state, alpha);
+        drawCardOnly(canvas, left, top, right, bottom);
+    }
+
+    private void setState(int[] state, int alpha) {
+        mPaint.setColor(StateColor.modulateAlpha(mBackgroundColor.getColor(state), alpha));
+        mBoundPaint.setColor(StateColor.modulateAlpha(mBoundColor.getColor(state), alpha));
+    }
+
+    private void drawCardOnly(Canvas canvas, float left, float top, float right, float bottom) {
+        RoundRectDrawableWithShadow.calculateRects(left, top, right, bottom,
+                mElevation, mLayoutElevation, mCardRect, mShadowRect);
+        if (mBoundSize != 0f) {
+            mInnerRect.set(mCardRect);
+            mInnerRect.inset(mBoundSize, mBoundSize);
+            mRoundRectHelper.drawRing(canvas, mCardRect, mInnerRect, mRadius, mBoundPaint);
+            mRoundRectHelper.drawRoundRect(canvas, mInnerRect,
+                    RoundRectHelper.getInnerRadius(mRadius, mBoundSize), mPaint);
+        } else {
+            mRoundRectHelper.drawRoundRect(canvas, mCardRect, mRadius, mPaint);
+        }
+    }
+
+    private void calculateRects(float[] bounds, int offset) {
+        RoundRectDrawableWithShadow.calculateRects(bounds[offset], bounds[offset + 1],
+                bounds[offset + 2], bounds[offset + 3], mElevation, mLayoutElevation,
+                mCardRect, mShadowRect);
+    }
+}
@@ -0,0 +1,139 @@
+package com.hippo.cardsalon;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+/**
+ * An immutable copy of what a card drawable draws: geometry, resolved colors and the shared
+ * shadow. It can be drawn from any thread, into bitmaps for shared element transitions or
+ * thumbnails for example.
+ * <p>
+ * Every draw allocates its own paints and scratch rects. Round rects are always drawn with
+ * canvas round rects, which is fine for the software canvas of a bitmap. A shadow drawn by
+ * the framework on L and later is not part of the snapshot.
+ *
+ * @see CardHelper#setCardSnapshotEnabled(boolean)
+ */
+public final class CardSnapshot {
+
+    private final Rect mBounds;
+    private final RectF mCardRect;
+    private final RectF mInnerRect;
+    private final boolean mDrawBounds;
+    private final float mRadius;
+    private final float mInnerRadius;
+    private final int mBackgroundColor;
+    private final int mBoundColor;
+    private final boolean mContentOpaque;
+
+    private final RectF mShadowRect;
+    private final float mShadowSize;
+    private final int mShadowQuality;
+    // One of them is set for shadow quality FULL or CACHED
+    private final ShadowAtlas mShadowAtlas;
+    private final ShadowGeometry mShadowGeometry;
+
+    /**
+     * Copies the geometry.
+     */
+    CardSnapshot(Rect bounds, RectF cardRect, RectF innerRect, boolean drawBounds, float radius,
+            int backgroundColor, int boundColor, boolean contentOpaque, RectF shadowRect,
+            float shadowSize, int shadowQuality, ShadowAtlas shadowAtlas,
+            ShadowGeometry shadowGeometry) {
+        mBounds = new Rect(bounds);
+        mCardRect = new RectF(cardRect);
+        mInnerRect = new RectF(innerRect);
+        mDrawBounds = drawBounds;
+        mRadius = radius;
+        mInnerRadius = RoundRectHelper.getInnerRadius(radius, innerRect.left - cardRect.left);
+        mBackgroundColor = backgroundColor;
+        mBoundColor = boundColor;
+        mContentOpaque = contentOpaque;
+        mShadowRect = new RectF(shadowRect);
+        mShadowSize = shadowSize;
+        mShadowQuality = shadowSize > 0f ? shadowQuality : ShadowQuality.NONE;
+        mShadowAtlas = shadowAtlas;
+        mShadowGeometry = shadowGeometry;
+    }
+
+    public int getWidth() {
+        return mBounds.width();
+    }
+
+    public int getHeight() {
+        return mBounds.height();
+    }
+
+    /**
+     * Get the bounds the drawable had.
+     */
+    public void getBounds(Rect bounds) {
+        bounds.set(mBounds);
+    }
+
+    /**
+     * Draw the card at the bounds the drawable had.
+     */
+    public void draw(Canvas canvas) {
+        drawShadow(canvas);
+
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
+        if (mDrawBounds) {
+            paint.setColor(mBoundColor);
+            RoundRectHelper.CANVAS.drawRing(canvas, mCardRect, mInnerRect, mRadius, paint,
+                    new RectF());
+            if (!mContentOpaque) {
+                paint.setColor(mBackgroundColor);
+                RoundRectHelper.CANVAS.drawRoundRect(canvas, mInnerRect, mInnerRadius, paint);
+            }
+        } else if (!mContentOpaque) {
+            paint.setColor(mBackgroundColor);
+            RoundRectHelper.CANVAS.drawRoundRect(canvas, mCardRect, mRadius, paint);
+        }
+    }
+
+    private void drawShadow(Canvas canvas) {
+        RectF rect = mShadowRect;
+        switch (mShadowQuality) {
+            case ShadowQuality.NONE:
+                break;
+            case ShadowQuality.FLAT:
+                Paint flatPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+                flatPaint.setColor(RoundRectDrawableWithShadow.SHADOW_HALF_COLOR);
+                float halfSize = mShadowSize / 2;
+                RectF flatRect = new RectF(rect);
+                flatRect.inset(halfSize, halfSize);
+                RoundRectHelper.CANVAS.drawRoundRect(canvas, flatRect, mRadius + halfSize,
+                        flatPaint);
+                break;
+            default:
+                if (mShadowAtlas != null) {
+                    mShadowAtlas.draw(canvas, rect.left, rect.top, rect.right, rect.bottom,
+                            new Paint(Paint.DITHER_FLAG), new Rect(), new RectF());
+                } else if (mShadowGeometry != null) {
+                    Paint cornerShadowPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
+                    Paint edgeShadowPaint = new Paint(Paint.DITHER_FLAG);
+                    mShadowGeometry.apply(cornerShadowPaint, edgeShadowPaint);
+                    RoundRectDrawableWithShadow.drawShadow(canvas, rect.left, rect.top,
+                            rect.width(), rect.height(), mRadius, mShadowSize,
+                            mShadowGeometry.getCornerPath(), cornerShadowPaint, edgeShadowPaint);
+                }
+                break;
+        }
+    }
+
+    /**
+     * Returns a new bitmap of the size of the bounds with the card drawn in it.
+     */
+    public Bitmap toBitmap() {
+        Bitmap bitmap = Bitmap.createBitmap(Math.max(1, getWidth()), Math.max(1, getHeight()),
+                Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        canvas.translate(-mBounds.left, -mBounds.top);
+        draw(canvas);
+        return bitmap;
+    }
+}
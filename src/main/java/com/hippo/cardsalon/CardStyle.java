@@ -0,0 +1,255 @@
+package com.hippo.cardsalon;
+
+import android.content.res.ColorStateList;
+import android.graphics.Color;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The resolved appearance of a card. Immutable and interned, so all cards inflated
+ * with the same attributes share one instance.
+ * <p>
+ * Stateful color lists are compared by identity, resources already share them.
+ * <p>
+ * Styles come from attributes through {@link CardStyleResolver}, or from code through
+ * {@link Builder}, which needs no context and is the only way to build one in code.
+ */
+public final class CardStyle {
+
+    private static final Map<CardStyle, WeakReference<CardStyle>> sPool = new WeakHashMap<>();
+
+    private final ColorStateList mBackgroundColor;
+    private final float mRadius;
+    private final ColorStateList mBoundColor;
+    private final float mBoundSize;
+    private final float mElevation;
+    private final float mMaxElevation;
+    private final boolean mForceNoElevation;
+    private final boolean mStaticBackground;
+    private final int mClipMode;
+
+    private final int mHashCode;
+
+    private CardStyle(ColorStateList backgroundColor, float radius, ColorStateList boundColor,
+            float boundSize, float elevation, float maxElevation, boolean forceNoElevation,
+            boolean staticBackground, int clipMode) {
+        mBackgroundColor = backgroundColor;
+        mRadius = radius;
+        mBoundColor = boundColor;
+        mBoundSize = boundSize;
+        mElevation = elevation;
+        mMaxElevation = maxElevation;
+        mForceNoElevation = forceNoElevation;
+        mStaticBackground = staticBackground;
+        mClipMode = clipMode;
+
+        int result = colorHashCode(backgroundColor);
+        result = 31 * result + Float.floatToIntBits(radius);
+        result = 31 * result + colorHashCode(boundColor);
+        result = 31 * result + Float.floatToIntBits(boundSize);
+        result = 31 * result + Float.floatToIntBits(elevation);
+        result = 31 * result + Float.floatToIntBits(maxElevation);
+        result = 31 * result + (forceNoElevation ? 1 : 0);
+        result = 31 * result + (staticBackground ? 1 : 0);
+        result = 31 * result + clipMode;
+        mHashCode = result;
+    }
+
+    /**
+     * Returns the shared style for these values. A {@code maxElevation} of zero reserves
+     * no padding beyond the elevation.
+     */
+    static CardStyle obtain(ColorStateList backgroundColor, float radius,
+            ColorStateList boundColor, float boundSize, float elevation, float maxElevation,
+            boolean forceNoElevation, boolean staticBackground, int clipMode) {
+        CardStyle style = new CardStyle(backgroundColor, radius, boundColor, boundSize,
+                elevation, maxElevation, forceNoElevation, staticBackground, clipMode);
+        synchronized (sPool) {
+            WeakReference<CardStyle> ref = sPool.get(style);
+            CardStyle interned = ref != null ? ref.get() : null;
+            if (interned != null) {
+                return interned;
+            }
+            sPool.put(style, new WeakReference<>(style));
+            return style;
+        }
+    }
+
+    public ColorStateList getBackgroundColor() {
+        return mBackgroundColor;
+    }
+
+    public float getRadius() {
+        return mRadius;
+    }
+
+    public ColorStateList getBoundColor() {
+        return mBoundColor;
+    }
+
+    public float getBoundSize() {
+        return mBoundSize;
+    }
+
+    public float getElevation() {
+        return mElevation;
+    }
+
+    public float getMaxElevation() {
+        return mMaxElevation;
+    }
+
+    public boolean isForceNoElevation() {
+        return mForceNoElevation;
+    }
+
+    public boolean isStaticBackground() {
+        return mStaticBackground;
+    }
+
+    public int getClipMode() {
+        return mClipMode;
+    }
+
+    private static int colorHashCode(ColorStateList color) {
+        return color.isStateful() ? System.identityHashCode(color) : color.getDefaultColor();
+    }
+
+    private static boolean colorEquals(ColorStateList a, ColorStateList b) {
+        return a == b || (!a.isStateful() && !b.isStateful() &&
+                a.getDefaultColor() == b.getDefaultColor());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CardStyle)) {
+            return false;
+        }
+        CardStyle style = (CardStyle) o;
+        return mHashCode == style.mHashCode &&
+                mRadius == style.mRadius &&
+                mBoundSize == style.mBoundSize &&
+                mElevation == style.mElevation &&
+                mMaxElevation == style.mMaxElevation &&
+                mForceNoElevation == style.mForceNoElevation &&
+                mStaticBackground == style.mStaticBackground &&
+                mClipMode == style.mClipMode &&
+                colorEquals(mBackgroundColor, style.mBackgroundColor) &&
+                colorEquals(mBoundColor, style.mBoundColor);
+    }
+
+    @Override
+    public int hashCode() {
+        return mHashCode;
+    }
+
+    /**
+     * Builds a style from values in pixels, without XML or a {@code TypedArray}.
+     * Colors default to white, sizes to zero.
+     */
+    public static final class Builder {
+
+        private ColorStateList mBackgroundColor;
+        private float mRadius;
+        private ColorStateList mBoundColor;
+        private float mBoundSize;
+        private float mElevation;
+        private float mMaxElevation;
+        private boolean mForceNoElevation;
+        private boolean mStaticBackground;
+        private int mClipMode = CardHelper.CLIP_MODE_ALWAYS;
+
+        public Builder() {
+        }
+
+        /**
+         * Start from the values of the style.
+         */
+        public Builder(CardStyle style) {
+            mBackgroundColor = style.mBackgroundColor;
+            mRadius = style.mRadius;
+            mBoundColor = style.mBoundColor;
+            mBoundSize = style.mBoundSize;
+            mElevation = style.mElevation;
+            mMaxElevation = style.mMaxElevation;
+            mForceNoElevation = style.mForceNoElevation;
+            mStaticBackground = style.mStaticBackground;
+            mClipMode = style.mClipMode;
+        }
+
+        public Builder setBackgroundColor(int color) {
+            mBackgroundColor = ColorStateList.valueOf(color);
+            return this;
+        }
+
+        public Builder setBackgroundColor(ColorStateList color) {
+            mBackgroundColor = color;
+            return this;
+        }
+
+        public Builder setRadius(float radius) {
+            mRadius = radius;
+            return this;
+        }
+
+        public Builder setBoundColor(int color) {
+            mBoundColor = ColorStateList.valueOf(color);
+            return this;
+        }
+
+        public Builder setBoundColor(ColorStateList color) {
+            mBoundColor = color;
+            return this;
+        }
+
+        public Builder setBoundSize(float boundSize) {
+            mBoundSize = boundSize;
+            return this;
+        }
+
+        public Builder setElevation(float elevation) {
+            mElevation = elevation;
+            return this;
+        }
+
+        public Builder setMaxElevation(float maxElevation) {
+            mMaxElevation = maxElevation;
+            return this;
+        }
+
+        public Builder setForceNoElevation(boolean forceNoElevation) {
+            mForceNoElevation = forceNoElevation;
+            return this;
+        }
+
+        public Builder setStaticBackground(boolean staticBackground) {
+            mStaticBackground = staticBackground;
+            return this;
+        }
+
+        public Builder setClipMode(int clipMode) {
+            if (clipMode < CardHelper.CLIP_MODE_ALWAYS || clipMode > CardHelper.CLIP_MODE_AUTO) {
+                throw new IllegalArgumentException("Invalid clip mode: " + clipMode);
+            }
+            mClipMode = clipMode;
+            return this;
+        }
+
+        /**
+         * Returns the shared style for the values, the builder can be reused.
+         */
+        public CardStyle build() {
+            ColorStateList backgroundColor = mBackgroundColor != null ?
+                    mBackgroundColor : ColorStateList.valueOf(Color.WHITE);
+            ColorStateList boundColor = mBoundColor != null ?
+                    mBoundColor : ColorStateList.valueOf(Color.WHITE);
+            return obtain(backgroundColor, mRadius, boundColor, mBoundSize, mElevation,
+                    mMaxElevation, mForceNoElevation, mStaticBackground, mClipMode);
+        }
+    }
+}
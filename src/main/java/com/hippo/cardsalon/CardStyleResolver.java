@@ -0,0 +1,170 @@
+package com.hippo.cardsalon;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.graphics.Color;
+import android.util.AttributeSet;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Resolves the {@link CardStyle} of inflated cards and remembers it, so later inflations
+ * of the same layout skip {@code obtainStyledAttributes}.
+ * <p>
+ * Every inflation gets a new {@code AttributeSet}, so it can't be the key. Styles are kept
+ * per theme together with a copy of the configuration they were resolved in, and keyed by
+ * the density, the {@code style} attribute and the raw values of the card attributes,
+ * which is all {@code obtainStyledAttributes} reads here. A theme kept across a
+ * configuration change, like in an activity handling it, drops the styles of the old
+ * configuration and resolves them again.
+ */
+public final class CardStyleResolver {
+
+    private static final Map<Resources.Theme, ThemeStyles> sCache = new WeakHashMap<>();
+
+    private static long sColdCount;
+    private static long sColdTime;
+    private static long sWarmCount;
+    private static long sWarmTime;
+
+    private CardStyleResolver() {
+    }
+
+    public static CardStyle resolve(Context context, AttributeSet attrs) {
+        long start = System.nanoTime();
+
+        Resources.Theme theme = context.getTheme();
+        Resources resources = context.getResources();
+        // Dimensions and colors depend on the configuration
+        Configuration configuration = resources.getConfiguration();
+        String key = buildKey(resources, attrs);
+        CardStyle style;
+        synchronized (sCache) {
+            ThemeStyles styles = sCache.get(theme);
+            if (styles == null || !styles.mConfiguration.equals(configuration)) {
+                styles = new ThemeStyles(configuration);
+                sCache.put(theme, styles);
+            }
+            style = styles.mStyles.get(key);
+            if (style == null) {
+                style = obtainStyle(context, attrs);
+                styles.mStyles.put(key, style);
+                sColdCount++;
+                sColdTime += System.nanoTime() - start;
+            } else {
+                sWarmCount++;
+                sWarmTime += System.nanoTime() - start;
+            }
+        }
+        return style;
+    }
+
+    private static String buildKey(Resources resources, AttributeSet attrs) {
+        StringBuilder sb = new StringBuilder();
+        // Configuration has no density before JB MR1
+        sb.append(resources.getDisplayMetrics().density);
+        if (attrs == null) {
+            return sb.toString();
+        }
+        sb.append(';').append(attrs.getStyleAttribute());
+        int[] styleable = R.styleable.CardHelper;
+        for (int i = 0, n = attrs.getAttributeCount(); i < n; i++) {
+            int nameResource = attrs.getAttributeNameResource(i);
+            for (int j = 0; j < styleable.length; j++) {
+                if (styleable[j] == nameResource) {
+                    sb.append(';').append(j).append('=').append(attrs.getAttributeValue(i));
+                    break;
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private static CardStyle obtainStyle(Context context, AttributeSet attrs) {
+        TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.CardHelper);
+
+        boolean forceNoElevation = a.getBoolean(R.styleable.CardHelper_forceNoElevation, false);
+        boolean staticBackground = a.getBoolean(R.styleable.CardHelper_cardStaticBackground, false);
+        int clipMode = a.getInt(R.styleable.CardHelper_cardClipMode, CardHelper.CLIP_MODE_ALWAYS);
+        ColorStateList backgroundColor = a.getColorStateList(R.styleable.CardHelper_cardBackgroundColor);
+        if (backgroundColor == null) {
+            backgroundColor = ColorStateList.valueOf(a.getColor(R.styleable.CardHelper_cardBackgroundColor, Color.WHITE));
+        }
+        float radius = a.getDimension(R.styleable.CardHelper_cardCornerRadius,
+                context.getResources().getDimension(R.dimen.default_card_corner_radius));
+        ColorStateList boundColor = a.getColorStateList(R.styleable.CardHelper_cardBoundColor);
+        if (boundColor == null) {
+            boundColor = ColorStateList.valueOf(a.getColor(R.styleable.CardHelper_cardBoundColor, Color.WHITE));
+        }
+        float boundSize = a.getDimension(R.styleable.CardHelper_cardBoundSize, 0f);
+        float elevation = a.getDimension(R.styleable.CardHelper_cardElevation,
+                context.getResources().getDimension(R.dimen.default_card_elevation));
+        float maxElevation = a.getDimension(R.styleable.CardHelper_cardMaxElevation, 0f);
+
+        a.recycle();
+
+        return CardStyle.obtain(backgroundColor, radius, boundColor, boundSize,
+                elevation, maxElevation, forceNoElevation, staticBackground, clipMode);
+    }
+
+    private static final class ThemeStyles {
+
+        private final Configuration mConfiguration;
+        private final Map<String, CardStyle> mStyles = new HashMap<>();
+
+        ThemeStyles(Configuration configuration) {
+            // The configuration of resources is updated in place
+            mConfiguration = new Configuration(configuration);
+        }
+    }
+
+    /**
+     * Drop all remembered styles, for example after changing a theme in place.
+     */
+    public static void clear() {
+        synchronized (sCache) {
+            sCache.clear();
+        }
+    }
+
+    /**
+     * Returns the number of inflations which resolved attributes.
+     */
+    public static long getColdCount() {
+        synchronized (sCache) {
+            return sColdCount;
+        }
+    }
+
+    /**
+     * Returns the total nanoseconds spent in inflations which resolved attributes.
+     */
+    public static long getColdTime() {
+        synchronized (sCache) {
+            return sColdTime;
+        }
+    }
+
+    /**
+     * Returns the number of inflations which reused a resolved style.
+     */
+    public static long getWarmCount() {
+        synchronized (sCache) {
+            return sWarmCount;
+        }
+    }
+
+    /**
+     * Returns the total nanoseconds spent in inflations which reused a resolved style.
+     */
+    public static long getWarmTime() {
+        synchronized (sCache) {
+            return sWarmTime;
+        }
+    }
+}
@@ -46,6 +46,24 @@ public class CardView extends FrameLayout implements CardViewDelegate {
         mCardHelper.initialize(context, attrs);
     }
 
+    @Override
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        super.onLayout(changed, left, top, right, bottom);
+        mCardHelper.onLayout();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mCardHelper.onAttachedToWindow();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mCardHelper.onDetachedFromWindow();
+    }
+
     @Override
     public void setBackgroundResource(int resid) {
         // Empty
@@ -119,4 +137,71 @@ public class CardView extends FrameLayout implements CardViewDelegate {
     public float getCardElevation() {
         return mCardHelper.getCardElevation();
     }
+
+    public void setCardMaxElevation(float maxElevation) {
+        mCardHelper.setCardMaxElevation(maxElevation);
+    }
+
+    public float getCardMaxElevation() {
+        return mCardHelper.getCardMaxElevation();
+    }
+
+    @Override
+    public void setCardContentOpaque(boolean contentOpaque) {
+        mCardHelper.setCardContentOpaque(contentOpaque);
+    }
+
+    @Override
+    public boolean isCardContentOpaque() {
+        return mCardHelper.isCardContentOpaque();
+    }
+
+    public void setCardShadowQuality(int shadowQuality) {
+        mCardHelper.setCardShadowQuality(shadowQuality);
+    }
+
+    public int getCardShadowQuality() {
+        return mCardHelper.getCardShadowQuality();
+    }
+
+    public void setCardClipMode(int clipMode) {
+        mCardHelper.setCardClipMode(clipMode);
+    }
+
+    public int getCardClipMode() {
+        return mCardHelper.getCardClipMode();
+    }
+
+    public void setCardSnapshotEnabled(boolean enabled) {
+        mCardHelper.setCardSnapshotEnabled(enabled);
+    }
+
+    public boolean isCardSnapshotEnabled() {
+        return mCardHelper.isCardSnapshotEnabled();
+    }
+
+    public CardSnapshot getCardSnapshot() {
+        return mCardHelper.getCardSnapshot();
+    }
+
+    @Override
+    public CardHelper.Editor editCard() {
+        return mCardHelper.edit();
+    }
+
+    public void animateCardRadius(float radius, long duration) {
+        mCardHelper.animateCardRadius(radius, duration);
+    }
+
+    public void animateCardElevation(float elevation, long duration) {
+        mCardHelper.animateCardElevation(elevation, duration);
+    }
+
+    public void animateCardBoundColor(int color, long duration) {
+        mCardHelper.animateCardBoundColor(color, duration);
+    }
+
+    public void cancelCardAnimations() {
+        mCardHelper.cancelCardAnimations();
+    }
 }
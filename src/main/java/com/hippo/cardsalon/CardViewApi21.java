@@ -24,13 +24,10 @@ import android.view.View;
 @TargetApi(Build.VERSION_CODES.LOLLIPOP)
 class CardViewApi21 implements CardViewImpl {
 
-    @Override
-    public void initStatic() {
-    }
-
     @Override
     public void initialize(CardHelper cardHelper, Context context, ColorStateList backgroundColor,
-            float radius, ColorStateList boundColor, float boundSize, float elevation) {
+            float radius, ColorStateList boundColor, float boundSize, float elevation,
+            float maxElevation) {
         final RoundRectDrawable backgroundDrawable =
                 new RoundRectDrawable(backgroundColor, radius, boundColor, boundSize);
         cardHelper.setBackgroundDrawable(backgroundDrawable);
@@ -40,15 +37,13 @@ class CardViewApi21 implements CardViewImpl {
 
         View view = (View) delegate;
         view.setBackground(backgroundDrawable);
-        view.setClipToOutline(true);
         view.setElevation(elevation);
     }
 
     @Override
     public void updatePadding(CardHelper cardHelper) {
         int boundSize = Math.round(((RoundRectDrawable) cardHelper.getBackgroundDrawable()).getBoundSize());
-        CardViewDelegate delegate = cardHelper.getDelegate();
-        delegate.setPadding(cardHelper.getOriginalPaddingLeft() + boundSize,
+        cardHelper.applyPadding(cardHelper.getOriginalPaddingLeft() + boundSize,
                 cardHelper.getOriginalPaddingTop() + boundSize,
                 cardHelper.getOriginalPaddingRight() + boundSize,
                 cardHelper.getOriginalPaddingBottom() + boundSize);
@@ -58,6 +53,8 @@ class CardViewApi21 implements CardViewImpl {
     public void setCornerRadius(CardHelper cardHelper, float radius) {
         RoundRectDrawable drawable = (RoundRectDrawable) cardHelper.getBackgroundDrawable();
         drawable.setCornerRadius(radius);
+        // Bounds are the same, so the view doesn't ask for the outline itself
+        ((View) cardHelper.getDelegate()).invalidateOutline();
     }
 
     @Override
@@ -82,4 +79,81 @@ class CardViewApi21 implements CardViewImpl {
     public void setElevation(CardHelper cardHelper, float elevation) {
         ((View) cardHelper.getDelegate()).setElevation(elevation);
     }
+
+    @Override
+    public void setMaxElevation(CardHelper cardHelper, float maxElevation) {
+        // Elevation is drawn by the framework outside the view, it never takes padding
+    }
+
+    @Override
+    public void setMetrics(CardHelper cardHelper, CardMetrics metrics) {
+        RoundRectDrawable drawable = (RoundRectDrawable) cardHelper.getBackgroundDrawable();
+        drawable.setMetrics(metrics);
+    }
+
+    @Override
+    public void setAnimatedBoundColor(CardHelper cardHelper, int color) {
+        RoundRectDrawable drawable = (RoundRectDrawable) cardHelper.getBackgroundDrawable();
+        drawable.setAnimatedBoundColor(color);
+    }
+
+    @Override
+    public void setContentOpaque(CardHelper cardHelper, boolean contentOpaque) {
+        RoundRectDrawable drawable = (RoundRectDrawable) cardHelper.getBackgroundDrawable();
+        drawable.setContentOpaque(contentOpaque);
+    }
+
+    @Override
+    public void setShadowQuality(CardHelper cardHelper, int shadowQuality) {
+        // The framework draws the shadow
+    }
+
+    @Override
+    public void updateClip(CardHelper cardHelper) {
+        View view = (View) cardHelper.getDelegate();
+        boolean clip = cardHelper.shouldClip();
+        if (view.getClipToOutline() != clip) {
+            view.setClipToOutline(clip);
+        }
+    }
+
+    @Override
+    public void setSnapshotEnabled(CardHelper cardHelper, boolean enabled) {
+        RoundRectDrawable drawable = (RoundRectDrawable) cardHelper.getBackgroundDrawable();
+        drawable.setSnapshotEnabled(enabled);
+    }
+
+    @Override
+    public CardSnapshot getSnapshot(CardHelper cardHelper) {
+        RoundRectDrawable drawable = (RoundRectDrawable) cardHelper.getBackgroundDrawable();
+        return drawable.getSnapshot();
+    }
+
+    @Override
+    public boolean drawsShadow() {
+        return false;
+    }
+
+    @Override
+    public boolean blursShadow() {
+        return false;
+    }
+
+    @Override
+    public void prefetchShadow(CardHelper cardHelper, float radius, float elevation) {
+        // The framework draws the shadow
+    }
+
+    @Override
+    public void setProperties(CardHelper cardHelper, ColorStateList backgroundColor, float radius,
+            ColorStateList boundColor, float boundSize, float elevation) {
+        RoundRectDrawable drawable = (RoundRectDrawable) cardHelper.getBackgroundDrawable();
+        float oldRadius = drawable.getCornerRadius();
+        drawable.setProperties(backgroundColor, radius, boundColor, boundSize);
+        View view = (View) cardHelper.getDelegate();
+        view.setElevation(elevation);
+        if (oldRadius != radius) {
+            view.invalidateOutline();
+        }
+    }
 }
@@ -0,0 +1,31 @@
+package com.hippo.cardsalon;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.os.Build;
+
+/**
+ * Draws the pre-L shadow for cards with forceNoElevation on L and above.
+ * The framework keeps the background in its own display list until it is invalidated.
+ * The cached shadow is a blurred atlas, which is cheap to render at low resolution
+ * and scales up well on these devices.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+class CardViewApi21NoElevation extends CardViewJellybeanMr1 {
+
+    @Override
+    public void initialize(CardHelper cardHelper, Context context, ColorStateList backgroundColor,
+            float radius, ColorStateList boundColor, float boundSize, float elevation,
+            float maxElevation) {
+        super.initialize(cardHelper, context, backgroundColor, radius, boundColor, boundSize,
+                elevation, maxElevation);
+        RoundRectDrawableWithShadow drawable = (RoundRectDrawableWithShadow) cardHelper.getBackgroundDrawable();
+        drawable.setShadowBlurred(true);
+    }
+
+    @Override
+    public boolean blursShadow() {
+        return true;
+    }
+}
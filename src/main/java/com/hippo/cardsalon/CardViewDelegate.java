@@ -50,4 +50,10 @@ public interface CardViewDelegate {
     void setCardElevation(float elevation);
 
     float getCardElevation();
+
+    void setCardContentOpaque(boolean contentOpaque);
+
+    boolean isCardContentOpaque();
+
+    CardHelper.Editor editCard();
 }
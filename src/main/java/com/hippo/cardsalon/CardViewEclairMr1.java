@@ -18,65 +18,21 @@ package com.hippo.cardsalon;
 
 import android.content.Context;
 import android.content.res.ColorStateList;
-import android.graphics.Canvas;
-import android.graphics.Paint;
-import android.graphics.RectF;
 
 class CardViewEclairMr1 implements CardViewImpl {
 
-    final RectF sCornerRect = new RectF();
-
-    @Override
-    public void initStatic() {
-        // Draws a round rect using 7 draw operations. This is faster than using
-        // canvas.drawRoundRect before JBMR1 because API 11-16 used alpha mask textures to draw
-        // shapes.
-        RoundRectDrawableWithShadow.sRoundRectHelper
-                = new RoundRectDrawableWithShadow.RoundRectHelper() {
-            @Override
-            public void drawRoundRect(Canvas canvas, RectF bounds, float cornerRadius,
-                    Paint paint) {
-                final float twoRadius = cornerRadius * 2;
-                final float innerWidth = bounds.width() - twoRadius - 1;
-                final float innerHeight = bounds.height() - twoRadius - 1;
-                // increment it to account for half pixels.
-                if (cornerRadius >= 1f) {
-                    cornerRadius += .5f;
-                    sCornerRect.set(-cornerRadius, -cornerRadius, cornerRadius, cornerRadius);
-                    int saved = canvas.save();
-                    canvas.translate(bounds.left + cornerRadius, bounds.top + cornerRadius);
-                    canvas.drawArc(sCornerRect, 180, 90, true, paint);
-                    canvas.translate(innerWidth, 0);
-                    canvas.rotate(90);
-                    canvas.drawArc(sCornerRect, 180, 90, true, paint);
-                    canvas.translate(innerHeight, 0);
-                    canvas.rotate(90);
-                    canvas.drawArc(sCornerRect, 180, 90, true, paint);
-                    canvas.translate(innerWidth, 0);
-                    canvas.rotate(90);
-                    canvas.drawArc(sCornerRect, 180, 90, true, paint);
-                    canvas.restoreToCount(saved);
-                    //draw top and bottom pieces
-                    canvas.drawRect(bounds.left + cornerRadius - 1f, bounds.top,
-                            bounds.right - cornerRadius + 1f, bounds.top + cornerRadius,
-                            paint);
-                    canvas.drawRect(bounds.left + cornerRadius - 1f,
-                            bounds.bottom - cornerRadius + 1f, bounds.right - cornerRadius + 1f,
-                            bounds.bottom, paint);
-                }
-                // center
-                canvas.drawRect(bounds.left, bounds.top + Math.max(0, cornerRadius - 1f),
-                        bounds.right, bounds.bottom - cornerRadius + 1f, paint);
-            }
-        };
+    RoundRectHelper getRoundRectHelper() {
+        return RoundRectHelper.SEVEN_OPS;
     }
 
     @Override
     public void initialize(CardHelper cardHelper, Context context, ColorStateList backgroundColor,
-            float radius, ColorStateList boundColor, float boundSize, float elevation) {
+            float radius, ColorStateList boundColor, float boundSize, float elevation,
+            float maxElevation) {
         final RoundRectDrawableWithShadow backgroundDrawable =
-                new RoundRectDrawableWithShadow(backgroundColor, radius,
+                new RoundRectDrawableWithShadow(getRoundRectHelper(), backgroundColor, radius,
                         boundColor, boundSize, Math.round(elevation));
+        backgroundDrawable.setMaxElevation(Math.round(maxElevation));
         cardHelper.setBackgroundDrawable(backgroundDrawable);
 
         CardViewDelegate delegate = cardHelper.getDelegate();
@@ -87,8 +43,7 @@ class CardViewEclairMr1 implements CardViewImpl {
     public void updatePadding(CardHelper cardHelper) {
         RoundRectDrawableWithShadow drawable = (RoundRectDrawableWithShadow) cardHelper.getBackgroundDrawable();
         float boundSize = drawable.getBoundSize();
-        CardViewDelegate delegate = cardHelper.getDelegate();
-        delegate.setPadding(
+        cardHelper.applyPadding(
                 cardHelper.getOriginalPaddingLeft() + Math.round(boundSize + drawable.getExtraPaddingLeft()),
                 cardHelper.getOriginalPaddingTop() + Math.round(boundSize + drawable.getExtraPaddingTop()),
                 cardHelper.getOriginalPaddingRight() + Math.round(boundSize + drawable.getExtraPaddingRight()),
@@ -122,6 +77,75 @@ class CardViewEclairMr1 implements CardViewImpl {
     @Override
     public void setElevation(CardHelper cardHelper, float elevation) {
         RoundRectDrawableWithShadow drawable = (RoundRectDrawableWithShadow) cardHelper.getBackgroundDrawable();
-        drawable.setElevation(elevation);
+        drawable.setElevation(Math.round(elevation));
+    }
+
+    @Override
+    public void setMaxElevation(CardHelper cardHelper, float maxElevation) {
+        RoundRectDrawableWithShadow drawable = (RoundRectDrawableWithShadow) cardHelper.getBackgroundDrawable();
+        drawable.setMaxElevation(Math.round(maxElevation));
+    }
+
+    @Override
+    public void setMetrics(CardHelper cardHelper, CardMetrics metrics) {
+        RoundRectDrawableWithShadow drawable = (RoundRectDrawableWithShadow) cardHelper.getBackgroundDrawable();
+        drawable.setMetrics(metrics);
+    }
+
+    @Override
+    public void setAnimatedBoundColor(CardHelper cardHelper, int color) {
+        RoundRectDrawableWithShadow drawable = (RoundRectDrawableWithShadow) cardHelper.getBackgroundDrawable();
+        drawable.setAnimatedBoundColor(color);
+    }
+
+    @Override
+    public void setContentOpaque(CardHelper cardHelper, boolean contentOpaque) {
+        RoundRectDrawableWithShadow drawable = (RoundRectDrawableWithShadow) cardHelper.getBackgroundDrawable();
+        drawable.setContentOpaque(contentOpaque);
+    }
+
+    @Override
+    public void setShadowQuality(CardHelper cardHelper, int shadowQuality) {
+        RoundRectDrawableWithShadow drawable = (RoundRectDrawableWithShadow) cardHelper.getBackgroundDrawable();
+        drawable.setShadowQuality(shadowQuality);
+    }
+
+    @Override
+    public void updateClip(CardHelper cardHelper) {
+        // Children are not clipped before L
+    }
+
+    @Override
+    public void setSnapshotEnabled(CardHelper cardHelper, boolean enabled) {
+        RoundRectDrawableWithShadow drawable = (RoundRectDrawableWithShadow) cardHelper.getBackgroundDrawable();
+        drawable.setSnapshotEnabled(enabled);
+    }
+
+    @Override
+    public CardSnapshot getSnapshot(CardHelper cardHelper) {
+        RoundRectDrawableWithShadow drawable = (RoundRectDrawableWithShadow) cardHelper.getBackgroundDrawable();
+        return drawable.getSnapshot();
+    }
+
+    @Override
+    public boolean drawsShadow() {
+        return true;
+    }
+
+    @Override
+    public boolean blursShadow() {
+        return false;
+    }
+
+    @Override
+    public void prefetchShadow(CardHelper cardHelper, float radius, float elevation) {
+        RoundRectDrawableWithShadow.prefetchShadow(radius, Math.round(elevation), blursShadow());
+    }
+
+    @Override
+    public void setProperties(CardHelper cardHelper, ColorStateList backgroundColor, float radius,
+            ColorStateList boundColor, float boundSize, float elevation) {
+        RoundRectDrawableWithShadow drawable = (RoundRectDrawableWithShadow) cardHelper.getBackgroundDrawable();
+        drawable.setProperties(backgroundColor, radius, boundColor, boundSize, Math.round(elevation));
     }
 }
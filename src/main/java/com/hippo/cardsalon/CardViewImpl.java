@@ -23,10 +23,9 @@ import android.content.res.ColorStateList;
  */
 interface CardViewImpl {
 
-    void initStatic();
-
     void initialize(CardHelper cardHelper, Context context, ColorStateList backgroundColor,
-            float radius, ColorStateList boundColor, float boundSize, float elevation);
+            float radius, ColorStateList boundColor, float boundSize, float elevation,
+            float maxElevation);
 
     void updatePadding(CardHelper cardHelper);
 
@@ -39,4 +38,44 @@ interface CardViewImpl {
     void setBoundColor(CardHelper cardHelper, ColorStateList color);
 
     void setElevation(CardHelper cardHelper, float elevation);
+
+    void setMaxElevation(CardHelper cardHelper, float maxElevation);
+
+    void setMetrics(CardHelper cardHelper, CardMetrics metrics);
+
+    void setAnimatedBoundColor(CardHelper cardHelper, int color);
+
+    void setContentOpaque(CardHelper cardHelper, boolean contentOpaque);
+
+    void setShadowQuality(CardHelper cardHelper, int shadowQuality);
+
+    /**
+     * Clip children or not, see {@link CardHelper#shouldClip()}.
+     */
+    void updateClip(CardHelper cardHelper);
+
+    void setSnapshotEnabled(CardHelper cardHelper, boolean enabled);
+
+    /**
+     * Returns the latest snapshot of the background, may be called from any thread.
+     */
+    CardSnapshot getSnapshot(CardHelper cardHelper);
+
+    /**
+     * Returns true if the card draws its own shadow, false if the framework draws it.
+     */
+    boolean drawsShadow();
+
+    /**
+     * Returns true if the cached shadow is a blurred atlas rather than rendered gradients.
+     */
+    boolean blursShadow();
+
+    /**
+     * Make the shadow for the radius and elevation ready, so setting them later is cheap.
+     */
+    void prefetchShadow(CardHelper cardHelper, float radius, float elevation);
+
+    void setProperties(CardHelper cardHelper, ColorStateList backgroundColor, float radius,
+            ColorStateList boundColor, float boundSize, float elevation);
 }
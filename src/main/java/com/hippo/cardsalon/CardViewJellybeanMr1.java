@@ -15,21 +15,10 @@
  */
 package com.hippo.cardsalon;
 
-import android.graphics.Canvas;
-import android.graphics.Paint;
-import android.graphics.RectF;
-
 class CardViewJellybeanMr1 extends CardViewEclairMr1 {
 
     @Override
-    public void initStatic() {
-        RoundRectDrawableWithShadow.sRoundRectHelper
-                = new RoundRectDrawableWithShadow.RoundRectHelper() {
-            @Override
-            public void drawRoundRect(Canvas canvas, RectF bounds, float cornerRadius,
-                    Paint paint) {
-                canvas.drawRoundRect(bounds, cornerRadius, cornerRadius, paint);
-            }
-        };
+    RoundRectHelper getRoundRectHelper() {
+        return RoundRectHelper.CANVAS;
     }
 }
@@ -0,0 +1,32 @@
+package com.hippo.cardsalon;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+
+/**
+ * Draws cards with cardStaticBackground before L. The drawable renders the whole card
+ * into a pooled bitmap once, and later frames only draw that bitmap until radius,
+ * elevation, bounds or colors change.
+ */
+class CardViewStatic extends CardViewEclairMr1 {
+
+    private final RoundRectHelper mRoundRectHelper;
+
+    CardViewStatic(RoundRectHelper roundRectHelper) {
+        mRoundRectHelper = roundRectHelper;
+    }
+
+    @Override
+    RoundRectHelper getRoundRectHelper() {
+        return mRoundRectHelper;
+    }
+
+    @Override
+    public void initialize(CardHelper cardHelper, Context context, ColorStateList backgroundColor,
+            float radius, ColorStateList boundColor, float boundSize, float elevation,
+            float maxElevation) {
+        super.initialize(cardHelper, context, backgroundColor, radius, boundColor, boundSize,
+                elevation, maxElevation);
+        ((RoundRectDrawableWithShadow) cardHelper.getBackgroundDrawable()).setBitmapEnabled(true);
+    }
+}
@@ -28,6 +28,7 @@ import android.graphics.RectF;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.support.annotation.NonNull;
+import android.view.View;
 
 /**
  * Very simple drawable that draws a rounded rectangle background with arbitrary corners and also
@@ -38,37 +39,52 @@ import android.support.annotation.NonNull;
 @TargetApi(Build.VERSION_CODES.LOLLIPOP)
 class RoundRectDrawable extends Drawable {
 
-    private ColorStateList mBackgroundColor;
-    private ColorStateList mBoundColor;
+    private StateColor mBackgroundColor;
+    private StateColor mBoundColor;
 
     private int mCurrentBackgroundColor;
     private int mCurrentBoundColor;
 
     private float mRadius;
     private final Paint mPaint;
-    private final Rect mBounds;
     private final RectF mBoundsF;
 
     private Paint mBoundPaint;
     private float mBoundSize;
     private RectF mInnerF;
+    // Children cover the inner rect, so it is not filled
+    private boolean mContentOpaque;
+
+    // Applied to all paints, so fading needs no layer
+    private int mAlpha = 0xff;
+    private ColorFilter mColorFilter;
 
     private boolean mDirty = true;
 
+    // Published after changes while enabled, read from any thread
+    private boolean mSnapshotEnabled;
+    private boolean mSnapshotDirty;
+    private volatile CardSnapshot mSnapshot;
+
+    // Rebuilt only if bounds or radius change
+    private final Outline mOutline = new Outline();
+    private boolean mOutlineDirty = true;
+
+    private CardMetrics mMetrics;
+
     public RoundRectDrawable(ColorStateList backgroundColor, float radius, ColorStateList boundColor, float boundSize) {
-        mBackgroundColor = backgroundColor;
-        mBoundColor = boundColor;
+        mBackgroundColor = new StateColor(backgroundColor);
+        mBoundColor = new StateColor(boundColor);
 
         mRadius = radius;
 
-        mCurrentBackgroundColor = Color.WHITE;
+        mCurrentBackgroundColor = mBackgroundColor.getColor(getState());
         mPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
         mPaint.setColor(mCurrentBackgroundColor);
 
-        mBounds = new Rect();
         mBoundsF = new RectF();
 
-        mCurrentBoundColor = Color.WHITE;
+        mCurrentBoundColor = mBoundColor.getColor(getState());
         mBoundPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
         mBoundPaint.setColor(mCurrentBoundColor);
 
@@ -78,46 +94,124 @@ class RoundRectDrawable extends Drawable {
 
     @Override
     public boolean isStateful() {
-        return true;
+        return mBackgroundColor.isStateful() || mBoundColor.isStateful();
     }
 
     @Override
     protected boolean onStateChange(int[] state) {
         boolean result = super.onStateChange(state);
+        if (updateColors(state)) {
+            invalidateSelf();
+            result = true;
+        }
+        return result;
+    }
+
+    /**
+     * Resolve colors for the state. Returns true if a color really changed.
+     */
+    private boolean updateColors(int[] state) {
+        boolean changed = false;
 
-        int backgroundColor = mBackgroundColor.getColorForState(state, Color.WHITE);
+        int backgroundColor = mBackgroundColor.getColor(state);
         if (mCurrentBackgroundColor != backgroundColor) {
             mCurrentBackgroundColor = backgroundColor;
-            mPaint.setColor(backgroundColor);
-            result |= true;
+            mPaint.setColor(StateColor.modulateAlpha(backgroundColor, mAlpha));
+            if (mMetrics != null) {
+                mMetrics.onColorChange();
+            }
+            changed = true;
         }
 
-        int boundColor = mBoundColor.getColorForState(state, Color.WHITE);
+        int boundColor = mBoundColor.getColor(state);
         if (mCurrentBoundColor != boundColor) {
             mCurrentBoundColor = boundColor;
-            mBoundPaint.setColor(boundColor);
-            result |= true;
+            mBoundPaint.setColor(StateColor.modulateAlpha(boundColor, mAlpha));
+            if (mMetrics != null) {
+                mMetrics.onColorChange();
+            }
+            changed = true;
         }
 
-        return result;
+        if (changed) {
+            mSnapshotDirty = true;
+        }
+        return changed;
     }
 
     private boolean isDrawBounds() {
         return mBoundSize != 0f;
     }
 
+    void setMetrics(CardMetrics metrics) {
+        mMetrics = metrics;
+    }
+
+    /**
+     * Publish a {@link CardSnapshot} on the next draw and after every change, or stop it.
+     */
+    void setSnapshotEnabled(boolean enabled) {
+        if (mSnapshotEnabled != enabled) {
+            mSnapshotEnabled = enabled;
+            if (enabled) {
+                mSnapshotDirty = true;
+                invalidateSelf();
+            } else {
+                mSnapshot = null;
+            }
+        }
+    }
+
+    /**
+     * Returns the latest published snapshot, or {@code null}. Safe from any thread.
+     */
+    CardSnapshot getSnapshot() {
+        return mSnapshot;
+    }
+
+    private void publishSnapshot() {
+        // The framework draws the shadow
+        mSnapshot = new CardSnapshot(getBounds(), mBoundsF, mInnerF,
+                isDrawBounds(), mRadius, mCurrentBackgroundColor,
+                mCurrentBoundColor, mContentOpaque, mBoundsF, 0f, ShadowQuality.NONE, null, null);
+        mSnapshotDirty = false;
+    }
+
     @Override
     public void draw(Canvas canvas) {
+        CardMetrics metrics = mMetrics;
+        if (metrics == null) {
+            drawCard(canvas);
+        } else {
+            long start = System.nanoTime();
+            drawCard(canvas);
+            metrics.onDraw(System.nanoTime() - start);
+        }
+    }
+
+    private void drawCard(Canvas canvas) {
+        if (mAlpha == 0) {
+            return;
+        }
+
         if (mDirty) {
             buildComponents(getBounds());
             mDirty = false;
+            mSnapshotDirty = true;
+        }
+
+        if (mSnapshotEnabled && mSnapshotDirty) {
+            publishSnapshot();
         }
 
         if (isDrawBounds()) {
-            canvas.drawRoundRect(mBoundsF, mRadius, mRadius, mBoundPaint);
-            canvas.drawRoundRect(mInnerF, mRadius, mRadius, mPaint);
-        } else {
-            canvas.drawRoundRect(mBoundsF, mRadius, mRadius, mPaint);
+            RoundRectHelper.CANVAS.drawRing(canvas, mBoundsF, mInnerF, mRadius, mBoundPaint);
+            if (!mContentOpaque) {
+                RoundRectHelper.CANVAS.drawRoundRect(canvas, mInnerF,
+                        RoundRectHelper.getInnerRadius(mRadius, mBoundSize), mPaint);
+            }
+        } else if (!mContentOpaque) {
+            RoundRectHelper.CANVAS.drawRoundRect(canvas, mBoundsF, mRadius, mPaint);
         }
     }
 
@@ -129,10 +223,13 @@ class RoundRectDrawable extends Drawable {
 
     private void updateBounds() {
         mDirty = true;
+        mOutlineDirty = true;
     }
 
     private void buildComponents(Rect bounds) {
-        mBounds.set(bounds);
+        if (mMetrics != null) {
+            mMetrics.onRebuild();
+        }
         mBoundsF.left = bounds.left;
         mBoundsF.top = bounds.top;
         mBoundsF.right = bounds.right;
@@ -151,33 +248,105 @@ class RoundRectDrawable extends Drawable {
 
     @Override
     public void getOutline(@NonNull Outline outline) {
-        outline.setRoundRect(getBounds(), mRadius);
+        if (mOutlineDirty) {
+            // A rect outline clips faster than a round rect without corners
+            if (mRadius > 0f) {
+                mOutline.setRoundRect(getBounds(), mRadius);
+            } else {
+                mOutline.setRect(getBounds());
+            }
+            // The framework shadow fades with the card
+            mOutline.setAlpha(mAlpha / 255f);
+            mOutlineDirty = false;
+        }
+        outline.set(mOutline);
     }
 
     @Override
     public void setAlpha(int alpha) {
-        // not supported
+        if (mAlpha != alpha) {
+            mAlpha = alpha;
+            mPaint.setColor(StateColor.modulateAlpha(mCurrentBackgroundColor, alpha));
+            mBoundPaint.setColor(StateColor.modulateAlpha(mCurrentBoundColor, alpha));
+            mOutlineDirty = true;
+            invalidateOutline();
+            invalidateSelf();
+        }
+    }
+
+    /**
+     * The view only asks for the outline again when its bounds change.
+     */
+    private void invalidateOutline() {
+        Callback callback = getCallback();
+        if (callback instanceof View) {
+            ((View) callback).invalidateOutline();
+        }
+    }
+
+    @Override
+    public int getAlpha() {
+        return mAlpha;
     }
 
     @Override
     public void setColorFilter(ColorFilter cf) {
-        // not supported
+        if (mColorFilter != cf) {
+            mColorFilter = cf;
+            mPaint.setColorFilter(cf);
+            mBoundPaint.setColorFilter(cf);
+            invalidateSelf();
+        }
+    }
+
+    @Override
+    public ColorFilter getColorFilter() {
+        return mColorFilter;
     }
 
     @Override
     public int getOpacity() {
-        return PixelFormat.TRANSLUCENT;
+        if (mAlpha == 0) {
+            return PixelFormat.TRANSPARENT;
+        }
+        // Round corners, skipped fill and filters leave pixels uncovered
+        if (mRadius > 0f || mContentOpaque || mColorFilter != null) {
+            return PixelFormat.TRANSLUCENT;
+        }
+        if (mAlpha < 0xff || Color.alpha(mCurrentBackgroundColor) < 0xff ||
+                (isDrawBounds() && Color.alpha(mCurrentBoundColor) < 0xff)) {
+            return PixelFormat.TRANSLUCENT;
+        }
+        return PixelFormat.OPAQUE;
+    }
+
+    /**
+     * Skip filling the inside of the card, for content which covers all of it.
+     */
+    void setContentOpaque(boolean contentOpaque) {
+        if (mContentOpaque != contentOpaque) {
+            mContentOpaque = contentOpaque;
+            mSnapshotDirty = true;
+            invalidateSelf();
+        }
     }
 
     public void setCornerRadius(float cornerRadius) {
         mRadius = cornerRadius;
+        // The ring depends on the radius
+        updateBounds();
         invalidateSelf();
     }
 
+    public float getCornerRadius() {
+        return mRadius;
+    }
+
     public void setColor(ColorStateList color) {
-        mBackgroundColor = color;
-        mPaint.setColor(color.getColorForState(getState(), Color.WHITE));
-        invalidateSelf();
+        mBackgroundColor = new StateColor(color);
+        if (updateColors(getState())) {
+            invalidateSelf();
+        }
     }
 
     public void setBoundSize(float boundSize) {
@@ -191,8 +360,49 @@ class RoundRectDrawable extends Drawable {
     }
 
     public void setBoundColor(ColorStateList color) {
-        mBoundColor = color;
-        mBoundPaint.setColor(color.getColorForState(getState(), Color.WHITE));
-        invalidateSelf();
+        mBoundColor = new StateColor(color);
+        if (updateColors(getState())) {
+            invalidateSelf();
+        }
+    }
+
+    /**
+     * Draw the bound in the color, until the state or bound color changes.
+     * Lets animations skip creating a color list per frame.
+     */
+    void setAnimatedBoundColor(int color) {
+        if (mCurrentBoundColor != color) {
+            mCurrentBoundColor = color;
+            mBoundPaint.setColor(StateColor.modulateAlpha(color, mAlpha));
+            mSnapshotDirty = true;
+            invalidateSelf();
+        }
+    }
+
+    /**
+     * Set all properties with at most one invalidation, none if nothing changed.
+     */
+    public void setProperties(ColorStateList backgroundColor, float cornerRadius,
+            ColorStateList boundColor, float boundSize) {
+        if (mBackgroundColor.getList() != backgroundColor) {
+            mBackgroundColor = new StateColor(backgroundColor);
+        }
+        if (mBoundColor.getList() != boundColor) {
+            mBoundColor = new StateColor(boundColor);
+        }
+        boolean changed = updateColors(getState());
+        if (mRadius != cornerRadius) {
+            mRadius = cornerRadius;
+            updateBounds();
+            changed = true;
+        }
+        if (mBoundSize != boundSize) {
+            mBoundSize = boundSize;
+            updateBounds();
+            changed = true;
+        }
+        if (changed) {
+            invalidateSelf();
+        }
     }
 }
@@ -17,126 +17,182 @@
 package com.hippo.cardsalon;
 
 import android.content.res.ColorStateList;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.ColorFilter;
-import android.graphics.LinearGradient;
 import android.graphics.Paint;
 import android.graphics.Path;
 import android.graphics.PixelFormat;
-import android.graphics.RadialGradient;
 import android.graphics.Rect;
 import android.graphics.RectF;
-import android.graphics.Shader;
 import android.graphics.drawable.Drawable;
 
-import com.hippo.yorozuya.MathUtils;
-
 /**
  * A rounded rectangle drawable which also includes a shadow around.
  */
 class RoundRectDrawableWithShadow extends Drawable {
 
-    /**
-     * This helper is set by CardView implementations.
-     * <p>
-     * Prior to API 17, canvas.drawRoundRect is expensive; which is why we need this interface
-     * to draw efficient rounded rectangles before 17.
-     */
-    static RoundRectHelper sRoundRectHelper;
-
-    private static int SHADOW_START_COLOR = 0x32000000;
-    private static int SHADOW_HALF_COLOR = 0x19000000;
-    private static int SHADOW_QUARTER_COLOR = 0x0C000000;
-    private static int SHADOW_END_COLOR = Color.TRANSPARENT;
+    static int SHADOW_START_COLOR = 0x32000000;
+    static int SHADOW_HALF_COLOR = 0x19000000;
+    static int SHADOW_QUARTER_COLOR = 0x0C000000;
+    static int SHADOW_END_COLOR = Color.TRANSPARENT;
 
-    private static float SHADOW_HALF_SCALE = 3f/8f;
-    private static float SHADOW_QUARTER_SCALE = 5f/8f;
+    static float SHADOW_HALF_SCALE = 3f/8f;
+    static float SHADOW_QUARTER_SCALE = 5f/8f;
 
     private static float SHADOW_LEFT_SCALE = 0.9f;
     private static float SHADOW_TOP_SCALE = 0.55f;
     private static float SHADOW_RIGHT_SCALE = 0.55f;
     private static float SHADOW_BOTTOM_SCALE = 1f;
 
-    private ColorStateList mBackgroundColor;
-    private ColorStateList mBoundColor;
+    // Shared by all cards, only touched on the UI thread
+    private static final RectF sTempOuterRectF = new RectF();
+    private static final ShadowCache.Key sShadowKey = new ShadowCache.Key();
+    private static final Paint sShadowAtlasPaint = new Paint(Paint.DITHER_FLAG);
+    private static final Rect sShadowSrcRect = new Rect();
+    private static final RectF sShadowDstRect = new RectF();
+    private static final Canvas sBitmapCanvas = new Canvas();
+    private static final Rect sBitmapSrcRect = new Rect();
+    private static final Paint sBitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private static final Paint sFlatShadowPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    /**
+     * Chosen by the CardView implementation.
+     */
+    private final RoundRectHelper mRoundRectHelper;
+
+    private StateColor mBackgroundColor;
+    private StateColor mBoundColor;
 
     private int mCurrentBackgroundColor;
     private int mCurrentBoundColor;
 
     private final Paint mPaint;
     private final Paint mBoundPaint;
-    private final Paint mCornerShadowPaint;
-    private final Paint mEdgeShadowPaint;
 
     private final RectF mBoundRect;
     private final RectF mInnerRect;
-    private final Path mCornerShadowPath;
+    private final RectF mShadowRect;
 
     private float mCornerRadius;
     private float mBoundSize;
     private float mElevation;
+    // Padding and card bounds are laid out for the larger of it and mElevation
+    private float mMaxElevation;
+    // Children cover the inner rect, so it is not filled
+    private boolean mContentOpaque;
+
+    // Applied to all paints, so fading needs no layer
+    private int mAlpha = 0xff;
+    private ColorFilter mColorFilter;
+    // Alpha and color filter the paints are set up with. The static bitmap is drawn
+    // opaque and unfiltered, then blitted with the real ones.
+    private int mPaintAlpha = 0xff;
+    private ColorFilter mPaintColorFilter;
 
     private boolean mDirty = true;
-
-    private final RectF mTempInnerRectF;
-    private final RectF mTempOuterRectF;
-
-    public RoundRectDrawableWithShadow(ColorStateList backgroundColor, float radius,
+    // The shadow only depends on corner radius and elevation, not on bounds
+    private boolean mShadowDirty = true;
+
+    // ShadowQuality set for the card, and the one the shadow is built for
+    private int mShadowQuality = ShadowQuality.DEFAULT;
+    private int mBuiltShadowQuality = ShadowQuality.DEFAULT;
+    // Cache a blurred atlas instead of the gradients
+    private boolean mShadowBlurred;
+
+    // Most cards draw a shared atlas
+    private ShadowAtlas mShadowAtlas;
+    // Only created if the shadow cache is disabled
+    private Paint mCornerShadowPaint;
+    private Paint mEdgeShadowPaint;
+    private ShadowGeometry mShadowGeometry;
+
+    private CardMetrics mMetrics;
+
+    // Only used if the static bitmap is enabled, from CardBitmapPool
+    private boolean mBitmapEnabled;
+    private Bitmap mBitmap;
+    // Whether the static bitmap is out of date
+    private boolean mCacheDirty;
+
+    // Published after changes while enabled, read from any thread
+    private boolean mSnapshotEnabled;
+    private boolean mSnapshotDirty;
+    private volatile CardSnapshot mSnapshot;
+
+    public RoundRectDrawableWithShadow(RoundRectHelper roundRectHelper,
+            ColorStateList backgroundColor, float radius,
             ColorStateList boundColor, float boundSize, float elevation) {
-        mBackgroundColor = backgroundColor;
-        mBoundColor = boundColor;
+        mRoundRectHelper = roundRectHelper;
+        mBackgroundColor = new StateColor(backgroundColor);
+        mBoundColor = new StateColor(boundColor);
 
-        mCurrentBackgroundColor = Color.WHITE;
+        mCurrentBackgroundColor = mBackgroundColor.getColor(getState());
         mPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
         mPaint.setColor(mCurrentBackgroundColor);
 
-        mCurrentBoundColor = Color.WHITE;
+        mCurrentBoundColor = mBoundColor.getColor(getState());
         mBoundPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
         mBoundPaint.setColor(mCurrentBoundColor);
 
-        mCornerShadowPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
-        mCornerShadowPaint.setStyle(Paint.Style.FILL);
-
-        mEdgeShadowPaint = new Paint(mCornerShadowPaint);
-        mEdgeShadowPaint.setAntiAlias(false);
-
         mBoundRect = new RectF();
         mInnerRect = new RectF();
-        mCornerShadowPath = new Path();
+        mShadowRect = new RectF();
 
         mCornerRadius = radius;
         mBoundSize = boundSize;
         mElevation = elevation * 2;
 
-        mTempInnerRectF = new RectF();
-        mTempOuterRectF = new RectF();
+        ShadowQuality.register(this);
     }
 
     @Override
     public boolean isStateful() {
-        return true;
+        return mBackgroundColor.isStateful() || mBoundColor.isStateful();
     }
 
     @Override
     protected boolean onStateChange(int[] state) {
         boolean result = super.onStateChange(state);
+        if (updateColors(state)) {
+            invalidateSelf();
+            result = true;
+        }
+        return result;
+    }
+
+    /**
+     * Resolve colors for the state. Returns true if a color really changed.
+     */
+    private boolean updateColors(int[] state) {
+        boolean changed = false;
 
-        int backgroundColor = mBackgroundColor.getColorForState(state, Color.WHITE);
+        int backgroundColor = mBackgroundColor.getColor(state);
         if (mCurrentBackgroundColor != backgroundColor) {
             mCurrentBackgroundColor = backgroundColor;
-            mPaint.setColor(backgroundColor);
-            result |= true;
+            mPaint.setColor(StateColor.modulateAlpha(backgroundColor, mPaintAlpha));
+            if (mMetrics != null) {
+                mMetrics.onColorChange();
+            }
+            changed = true;
         }
 
-        int boundColor = mBoundColor.getColorForState(state, Color.WHITE);
+        int boundColor = mBoundColor.getColor(state);
         if (mCurrentBoundColor != boundColor) {
             mCurrentBoundColor = boundColor;
-            mBoundPaint.setColor(boundColor);
-            result |= true;
+            mBoundPaint.setColor(StateColor.modulateAlpha(boundColor, mPaintAlpha));
+            if (mMetrics != null) {
+                mMetrics.onColorChange();
+            }
+            changed = true;
         }
 
-        return result;
+        if (changed) {
+            mCacheDirty = true;
+            mSnapshotDirty = true;
+        }
+        return changed;
     }
 
     @Override
@@ -149,166 +205,472 @@ class RoundRectDrawableWithShadow extends Drawable {
         mDirty = true;
     }
 
+    private void updateShadow() {
+        mDirty = true;
+        mShadowDirty = true;
+    }
+
     private boolean isDrawBounds() {
         return mBoundSize != 0f;
     }
 
+    /**
+     * Render the card into a pooled bitmap and draw only that bitmap until something
+     * changes.
+     */
+    void setBitmapEnabled(boolean enabled) {
+        mBitmapEnabled = enabled;
+        if (enabled) {
+            mCacheDirty = true;
+        } else {
+            releaseBitmap();
+        }
+    }
+
+    private void releaseBitmap() {
+        if (mBitmap != null) {
+            CardBitmapPool.release(mBitmap);
+            mBitmap = null;
+        }
+    }
+
+    /**
+     * Gives the bitmap back to the pool while hidden, it is rendered again when shown.
+     */
+    @Override
+    public boolean setVisible(boolean visible, boolean restart) {
+        boolean changed = super.setVisible(visible, restart);
+        if (!visible) {
+            releaseBitmap();
+        }
+        return changed;
+    }
+
+    void setMetrics(CardMetrics metrics) {
+        mMetrics = metrics;
+    }
+
+    /**
+     * Publish a {@link CardSnapshot} on the next draw and after every change, or stop it.
+     */
+    void setSnapshotEnabled(boolean enabled) {
+        if (mSnapshotEnabled != enabled) {
+            mSnapshotEnabled = enabled;
+            if (enabled) {
+                mSnapshotDirty = true;
+                invalidateSelf();
+            } else {
+                mSnapshot = null;
+            }
+        }
+    }
+
+    /**
+     * Returns the latest published snapshot, or {@code null}. Safe from any thread.
+     */
+    CardSnapshot getSnapshot() {
+        return mSnapshot;
+    }
+
+    private void publishSnapshot() {
+        mSnapshot = new CardSnapshot(getBounds(), mBoundRect, mInnerRect,
+                isDrawBounds(), mCornerRadius, mCurrentBackgroundColor,
+                mCurrentBoundColor, mContentOpaque, mShadowRect, mElevation, mBuiltShadowQuality,
+                mShadowAtlas, mShadowAtlas == null ? mShadowGeometry : null);
+        mSnapshotDirty = false;
+    }
+
+    /**
+     * Draw the cached shadow as one blurred round rect rendered at low resolution, instead of
+     * the gradients. Only the {@link ShadowQuality#CACHED} quality uses it.
+     */
+    void setShadowBlurred(boolean blurred) {
+        if (mShadowBlurred != blurred) {
+            mShadowBlurred = blurred;
+            updateShadow();
+            invalidateSelf();
+        }
+    }
+
+    /**
+     * Set the {@link ShadowQuality} of the card, the shadow is rebuilt on the next draw.
+     */
+    void setShadowQuality(int shadowQuality) {
+        if (mShadowQuality != shadowQuality) {
+            mShadowQuality = shadowQuality;
+            invalidateSelf();
+        }
+    }
+
     @Override
     public void draw(Canvas canvas) {
+        CardMetrics metrics = mMetrics;
+        if (metrics == null) {
+            drawCard(canvas);
+        } else {
+            long start = System.nanoTime();
+            drawCard(canvas);
+            metrics.onDraw(System.nanoTime() - start);
+        }
+    }
+
+    private void drawCard(Canvas canvas) {
+        if (mAlpha == 0) {
+            return;
+        }
+
+        if (hasShadow()) {
+            ShadowQuality.onDraw();
+            int shadowQuality = ShadowQuality.resolve(mShadowQuality);
+            if (mBuiltShadowQuality != shadowQuality) {
+                mBuiltShadowQuality = shadowQuality;
+                updateShadow();
+            }
+        }
+
         if (mDirty) {
             buildComponents(getBounds());
             mDirty = false;
+            mCacheDirty = true;
+            mSnapshotDirty = true;
+        }
+
+        if (mSnapshotEnabled && mSnapshotDirty) {
+            publishSnapshot();
+        }
+
+        if (mBitmapEnabled) {
+            drawBitmap(canvas);
+        } else {
+            setPaintAlphaAndFilter(mAlpha, mColorFilter);
+            drawContent(canvas);
+        }
+    }
+
+    private void drawBitmap(Canvas canvas) {
+        Rect bounds = getBounds();
+        int width = bounds.width();
+        int height = bounds.height();
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+
+        Bitmap bitmap = mBitmap;
+        if (bitmap == null || !CardBitmapPool.fits(bitmap, width, height)) {
+            if (bitmap != null) {
+                CardBitmapPool.release(bitmap);
+            }
+            bitmap = CardBitmapPool.obtain(width, height);
+            mBitmap = bitmap;
+            mCacheDirty = true;
+            if (bitmap == null) {
+                // Over the budget of the pool
+                setPaintAlphaAndFilter(mAlpha, mColorFilter);
+                drawContent(canvas);
+                return;
+            }
+        }
+        if (mCacheDirty) {
+            setPaintAlphaAndFilter(0xff, null);
+            bitmap.eraseColor(Color.TRANSPARENT);
+            Canvas bitmapCanvas = sBitmapCanvas;
+            bitmapCanvas.setBitmap(bitmap);
+            int saved = bitmapCanvas.save();
+            bitmapCanvas.translate(-bounds.left, -bounds.top);
+            drawContent(bitmapCanvas);
+            bitmapCanvas.restoreToCount(saved);
+            bitmapCanvas.setBitmap(null);
+            mCacheDirty = false;
         }
+
+        sBitmapSrcRect.set(0, 0, width, height);
+        sBitmapPaint.setAlpha(mAlpha);
+        sBitmapPaint.setColorFilter(mColorFilter);
+        canvas.drawBitmap(bitmap, sBitmapSrcRect, bounds, sBitmapPaint);
+    }
+
+    private void drawContent(Canvas canvas) {
         drawShadow(canvas);
         if (isDrawBounds()) {
-            sRoundRectHelper.drawRoundRect(canvas, mBoundRect, mCornerRadius, mBoundPaint);
-            sRoundRectHelper.drawRoundRect(canvas, mInnerRect, mCornerRadius, mPaint);
-        } else {
-            sRoundRectHelper.drawRoundRect(canvas, mBoundRect, mCornerRadius, mPaint);
+            mRoundRectHelper.drawRing(canvas, mBoundRect, mInnerRect, mCornerRadius,
+                    mBoundPaint);
+            if (!mContentOpaque) {
+                mRoundRectHelper.drawRoundRect(canvas, mInnerRect,
+                        RoundRectHelper.getInnerRadius(mCornerRadius, mBoundSize), mPaint);
+            }
+        } else if (!mContentOpaque) {
+            mRoundRectHelper.drawRoundRect(canvas, mBoundRect, mCornerRadius, mPaint);
         }
     }
 
+    private boolean hasShadow() {
+        return mElevation > 0f;
+    }
+
     private void drawShadow(Canvas canvas) {
-        int width = getBounds().width();
-        int height = getBounds().height();
-        float cornerRadius = mCornerRadius;
-        float elevation = mElevation;
+        if (!hasShadow() || mBuiltShadowQuality == ShadowQuality.NONE) {
+            return;
+        }
+        RectF rect = mShadowRect;
+        if (mBuiltShadowQuality == ShadowQuality.FLAT) {
+            // Halfway between the card and the end of the shadow
+            sFlatShadowPaint.setColor(StateColor.modulateAlpha(SHADOW_HALF_COLOR, mPaintAlpha));
+            sFlatShadowPaint.setColorFilter(mPaintColorFilter);
+            float halfElevation = mElevation / 2;
+            RectF flatRect = sTempOuterRectF;
+            flatRect.set(rect);
+            flatRect.inset(halfElevation, halfElevation);
+            mRoundRectHelper.drawRoundRect(canvas, flatRect, mCornerRadius + halfElevation,
+                    sFlatShadowPaint);
+        } else if (mShadowAtlas != null) {
+            sShadowAtlasPaint.setAlpha(mPaintAlpha);
+            sShadowAtlasPaint.setColorFilter(mPaintColorFilter);
+            mShadowAtlas.draw(canvas, rect.left, rect.top, rect.right, rect.bottom,
+                    sShadowAtlasPaint, sShadowSrcRect, sShadowDstRect);
+        } else {
+            drawShadow(canvas, rect.left, rect.top, rect.width(), rect.height(),
+                    mCornerRadius, mElevation, mShadowGeometry.getCornerPath(), mCornerShadowPaint,
+                    mEdgeShadowPaint);
+        }
+    }
+
+    static void drawShadow(Canvas canvas, float left, float top, float width, float height,
+            float cornerRadius, float elevation, Path cornerShadowPath,
+            Paint cornerShadowPaint, Paint edgeShadowPaint) {
         float totalRadius = cornerRadius + elevation;
-        final boolean drawHorizontalEdges = getBounds().width() - 2 * totalRadius > 0;
-        final boolean drawVerticalEdges = getBounds().height() - 2 * totalRadius > 0;
+        final boolean drawHorizontalEdges = width - 2 * totalRadius > 0;
+        final boolean drawVerticalEdges = height - 2 * totalRadius > 0;
         // LT
         int saved = canvas.save();
-        canvas.translate(totalRadius, totalRadius);
-        canvas.drawPath(mCornerShadowPath, mCornerShadowPaint);
+        canvas.translate(left + totalRadius, top + totalRadius);
+        canvas.drawPath(cornerShadowPath, cornerShadowPaint);
         if (drawHorizontalEdges) {
             canvas.drawRect(0, -totalRadius, width - (totalRadius * 2), 0,
-                    mEdgeShadowPaint);
+                    edgeShadowPaint);
         }
         canvas.restoreToCount(saved);
         // RB
         saved = canvas.save();
-        canvas.translate(width - totalRadius, height - totalRadius);
+        canvas.translate(left + width - totalRadius, top + height - totalRadius);
         canvas.rotate(180f);
-        canvas.drawPath(mCornerShadowPath, mCornerShadowPaint);
+        canvas.drawPath(cornerShadowPath, cornerShadowPaint);
         if (drawHorizontalEdges) {
             canvas.drawRect(0, -totalRadius, width - (totalRadius * 2), 0,
-                    mEdgeShadowPaint);
+                    edgeShadowPaint);
         }
         canvas.restoreToCount(saved);
         // LB
         saved = canvas.save();
-        canvas.translate(totalRadius, height - totalRadius);
+        canvas.translate(left + totalRadius, top + height - totalRadius);
         canvas.rotate(270f);
-        canvas.drawPath(mCornerShadowPath, mCornerShadowPaint);
+        canvas.drawPath(cornerShadowPath, cornerShadowPaint);
         if (drawVerticalEdges) {
             canvas.drawRect(0, -totalRadius, height - (totalRadius * 2), 0,
-                    mEdgeShadowPaint);
+                    edgeShadowPaint);
         }
         canvas.restoreToCount(saved);
         // RT
         saved = canvas.save();
-        canvas.translate(width - totalRadius, totalRadius);
+        canvas.translate(left + width - totalRadius, top + totalRadius);
         canvas.rotate(90f);
-        canvas.drawPath(mCornerShadowPath, mCornerShadowPaint);
+        canvas.drawPath(cornerShadowPath, cornerShadowPaint);
         if (drawVerticalEdges) {
             canvas.drawRect(0, -totalRadius, height - (totalRadius * 2), 0,
-                    mEdgeShadowPaint);
+                    edgeShadowPaint);
         }
         canvas.restoreToCount(saved);
     }
 
-    private void buildShadowCorners() {
-        float cornerRadius = mCornerRadius;
-        float elevation = mElevation;
-        RectF innerBounds = mTempInnerRectF;
-        RectF outerBounds = mTempOuterRectF;
-
-        innerBounds.set(-cornerRadius, -cornerRadius, cornerRadius, cornerRadius);
-        outerBounds.set(innerBounds);
-        outerBounds.inset(-elevation, -elevation);
-
-        mCornerShadowPath.reset();
-        mCornerShadowPath.setFillType(Path.FillType.EVEN_ODD);
-        mCornerShadowPath.moveTo(-mCornerRadius, 0);
-        mCornerShadowPath.rLineTo(-mElevation, 0);
-        // outer arc
-        mCornerShadowPath.arcTo(outerBounds, 180f, 90f, false);
-        // inner arc
-        mCornerShadowPath.arcTo(innerBounds, 270f, -90f, false);
-        mCornerShadowPath.close();
-        float startRatio = cornerRadius / (cornerRadius + elevation);
-        mCornerShadowPaint.setShader(new RadialGradient(0, 0, cornerRadius + elevation,
-                new int[]{SHADOW_START_COLOR, SHADOW_START_COLOR, SHADOW_HALF_COLOR,
-                        SHADOW_QUARTER_COLOR, SHADOW_END_COLOR},
-                new float[]{0f, startRatio, MathUtils.lerp(startRatio, 1f, SHADOW_HALF_SCALE),
-                        MathUtils.lerp(startRatio, 1f, SHADOW_QUARTER_SCALE), 1f}, Shader.TileMode.CLAMP));
-
-        // we offset the content shadowSize/2 pixels up to make it more realistic.
-        // this is why edge shadow shader has some extra space
-        // When drawing bottom edge shadow, we use that extra space.
-        mEdgeShadowPaint.setShader(new LinearGradient(0, -cornerRadius + elevation, 0,
-                -cornerRadius - elevation,
-                new int[]{SHADOW_START_COLOR, SHADOW_START_COLOR, SHADOW_HALF_COLOR,
-                        SHADOW_QUARTER_COLOR, SHADOW_END_COLOR},
-                new float[]{0f, 0.5f, MathUtils.lerp(0.5f, 1f, SHADOW_HALF_SCALE),
-                        MathUtils.lerp(0.5f, 1f, SHADOW_QUARTER_SCALE), 1f}, Shader.TileMode.CLAMP));
-        mEdgeShadowPaint.setAntiAlias(false);
+    /**
+     * Put the shadow of a card with the radius and elevation into the cache,
+     * so a card changing to them later finds it.
+     */
+    static void prefetchShadow(float cornerRadius, float elevation, boolean blurred) {
+        if (elevation > 0f) {
+            ShadowCache.obtain(sShadowKey.set(cornerRadius, elevation * 2).setBlurred(blurred));
+        }
     }
 
-    private void buildComponents(Rect bounds) {
-        float elevation = mElevation;
-        mBoundRect.left = bounds.left + (elevation * SHADOW_LEFT_SCALE);
-        mBoundRect.top = bounds.top + (elevation * SHADOW_TOP_SCALE);
-        mBoundRect.right = bounds.right - (elevation * SHADOW_RIGHT_SCALE);
-        mBoundRect.bottom = bounds.bottom - (elevation * SHADOW_BOTTOM_SCALE);
+    private void buildShadow() {
+        mShadowAtlas = null;
+        if (!hasShadow() || mBuiltShadowQuality == ShadowQuality.FLAT ||
+                mBuiltShadowQuality == ShadowQuality.NONE) {
+            return;
+        }
+        if (mBuiltShadowQuality != ShadowQuality.FULL) {
+            mShadowAtlas = ShadowCache.obtain(
+                    sShadowKey.set(mCornerRadius, mElevation).setBlurred(mShadowBlurred));
+        }
+        // Full quality, or the cache is disabled
+        if (mShadowAtlas == null) {
+            if (mCornerShadowPaint == null) {
+                mCornerShadowPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
+                mCornerShadowPaint.setStyle(Paint.Style.FILL);
+                mEdgeShadowPaint = new Paint(mCornerShadowPaint);
+                mEdgeShadowPaint.setAntiAlias(false);
+                applyShadowPaint(mCornerShadowPaint);
+                applyShadowPaint(mEdgeShadowPaint);
+            }
+            mShadowGeometry = ShadowGeometry.obtain(mCornerRadius, mElevation, mMetrics);
+            mShadowGeometry.apply(mCornerShadowPaint, mEdgeShadowPaint);
+        }
+    }
 
+    private float getLayoutElevation() {
+        return Math.max(mElevation, mMaxElevation);
+    }
+
+    private void buildComponents(Rect bounds) {
+        if (mMetrics != null) {
+            mMetrics.onRebuild();
+        }
+        calculateRects(bounds.left, bounds.top, bounds.right, bounds.bottom,
+                mElevation, getLayoutElevation(), mBoundRect, mShadowRect);
         mInnerRect.set(mBoundRect);
         mInnerRect.inset(mBoundSize, mBoundSize);
 
-        buildShadowCorners();
+        if (mShadowDirty) {
+            buildShadow();
+            mShadowDirty = false;
+        }
+    }
+
+    /**
+     * Calculates the card inside the bounds, laid out for {@code layoutElevation},
+     * and the rect to draw the shadow of {@code elevation} in.
+     */
+    static void calculateRects(float left, float top, float right, float bottom,
+            float elevation, float layoutElevation, RectF cardRect, RectF shadowRect) {
+        cardRect.left = left + (layoutElevation * SHADOW_LEFT_SCALE);
+        cardRect.top = top + (layoutElevation * SHADOW_TOP_SCALE);
+        cardRect.right = right - (layoutElevation * SHADOW_RIGHT_SCALE);
+        cardRect.bottom = bottom - (layoutElevation * SHADOW_BOTTOM_SCALE);
+
+        // The shadow keeps its offsets to the card
+        shadowRect.left = cardRect.left - (elevation * SHADOW_LEFT_SCALE);
+        shadowRect.top = cardRect.top - (elevation * SHADOW_TOP_SCALE);
+        shadowRect.right = cardRect.right + (elevation * SHADOW_RIGHT_SCALE);
+        shadowRect.bottom = cardRect.bottom + (elevation * SHADOW_BOTTOM_SCALE);
+    }
+
+    /**
+     * Get the padding of a card with the bound size and layout elevation, rounded.
+     */
+    static void calculatePadding(float boundSize, float layoutElevation, Rect padding) {
+        padding.set(Math.round(boundSize + layoutElevation * SHADOW_LEFT_SCALE),
+                Math.round(boundSize + layoutElevation * SHADOW_TOP_SCALE),
+                Math.round(boundSize + layoutElevation * SHADOW_RIGHT_SCALE),
+                Math.round(boundSize + layoutElevation * SHADOW_BOTTOM_SCALE));
     }
 
     float getExtraPaddingLeft() {
-        return mElevation * SHADOW_LEFT_SCALE;
+        return getLayoutElevation() * SHADOW_LEFT_SCALE;
     }
 
     float getExtraPaddingTop() {
-        return mElevation * SHADOW_TOP_SCALE;
+        return getLayoutElevation() * SHADOW_TOP_SCALE;
     }
 
     float getExtraPaddingRight() {
-        return mElevation * SHADOW_RIGHT_SCALE;
+        return getLayoutElevation() * SHADOW_RIGHT_SCALE;
     }
 
     float getExtraPaddingBottom() {
-        return mElevation * SHADOW_BOTTOM_SCALE;
+        return getLayoutElevation() * SHADOW_BOTTOM_SCALE;
+    }
+
+    private void applyShadowPaint(Paint paint) {
+        paint.setAlpha(mPaintAlpha);
+        paint.setColorFilter(mPaintColorFilter);
     }
 
+    private void setPaintAlphaAndFilter(int alpha, ColorFilter cf) {
+        if (mPaintAlpha != alpha) {
+            mPaintAlpha = alpha;
+            mPaint.setColor(StateColor.modulateAlpha(mCurrentBackgroundColor, alpha));
+            mBoundPaint.setColor(StateColor.modulateAlpha(mCurrentBoundColor, alpha));
+        } else if (mPaintColorFilter == cf) {
+            return;
+        }
+        mPaintColorFilter = cf;
+        mPaint.setColorFilter(cf);
+        mBoundPaint.setColorFilter(cf);
+        if (mCornerShadowPaint != null) {
+            applyShadowPaint(mCornerShadowPaint);
+            applyShadowPaint(mEdgeShadowPaint);
+        }
+    }
+
+    /**
+     * Scales the alpha of every paint, including the shadow. Overlapping parts, like the
+     * shadow under the card edges, show through each other unlike in a layer.
+     */
     @Override
     public void setAlpha(int alpha) {
-        // not supported
+        if (mAlpha != alpha) {
+            mAlpha = alpha;
+            // Paints pick it up at draw time, the static bitmap stays valid
+            invalidateSelf();
+        }
+    }
+
+    @Override
+    public int getAlpha() {
+        return mAlpha;
     }
 
     @Override
     public void setColorFilter(ColorFilter cf) {
-        // not supported
+        if (mColorFilter != cf) {
+            mColorFilter = cf;
+            invalidateSelf();
+        }
+    }
+
+    @Override
+    public ColorFilter getColorFilter() {
+        return mColorFilter;
     }
 
     @Override
     public int getOpacity() {
-        return PixelFormat.TRANSLUCENT;
+        if (mAlpha == 0) {
+            return PixelFormat.TRANSPARENT;
+        }
+        // Shadow insets, round corners, skipped fill and filters leave pixels uncovered
+        if (getLayoutElevation() > 0f || mCornerRadius > 0f || mContentOpaque || mColorFilter != null) {
+            return PixelFormat.TRANSLUCENT;
+        }
+        if (mAlpha < 0xff || Color.alpha(mCurrentBackgroundColor) < 0xff ||
+                (isDrawBounds() && Color.alpha(mCurrentBoundColor) < 0xff)) {
+            return PixelFormat.TRANSLUCENT;
+        }
+        return PixelFormat.OPAQUE;
+    }
+
+    /**
+     * Skip filling the inside of the card, for content which covers all of it.
+     */
+    void setContentOpaque(boolean contentOpaque) {
+        if (mContentOpaque != contentOpaque) {
+            mContentOpaque = contentOpaque;
+            mCacheDirty = true;
+            mSnapshotDirty = true;
+            invalidateSelf();
+        }
     }
 
     public void setCornerRadius(float cornerRadius) {
         mCornerRadius = cornerRadius;
-        updateBounds();
+        updateShadow();
         invalidateSelf();
     }
 
     public void setColor(ColorStateList color) {
-        mBackgroundColor = color;
-        mPaint.setColor(color.getColorForState(getState(), Color.WHITE));
-        invalidateSelf();
+        mBackgroundColor = new StateColor(color);
+        if (updateColors(getState())) {
+            invalidateSelf();
+        }
     }
 
     public void setBoundSize(float boundSize) {
@@ -322,22 +684,69 @@ class RoundRectDrawableWithShadow extends Drawable {
     }
 
     public void setBoundColor(ColorStateList color) {
-        mBoundColor = color;
-        mBoundPaint.setColor(color.getColorForState(getState(), Color.WHITE));
-        invalidateSelf();
+        mBoundColor = new StateColor(color);
+        if (updateColors(getState())) {
+            invalidateSelf();
+        }
+    }
+
+    /**
+     * Draw the bound in the color, until the state or bound color changes.
+     * Lets animations skip creating a color list per frame.
+     */
+    void setAnimatedBoundColor(int color) {
+        if (mCurrentBoundColor != color) {
+            mCurrentBoundColor = color;
+            mBoundPaint.setColor(StateColor.modulateAlpha(color, mPaintAlpha));
+            mCacheDirty = true;
+            mSnapshotDirty = true;
+            invalidateSelf();
+        }
     }
 
     public void setElevation(float elevation) {
-        mElevation = elevation;
-        updateBounds();
+        mElevation = elevation * 2;
+        updateShadow();
         invalidateSelf();
     }
 
+    /**
+     * Set all properties with only one rebuild and at most one invalidation,
+     * none if nothing changed.
+     */
+    public void setProperties(ColorStateList backgroundColor, float cornerRadius,
+            ColorStateList boundColor, float boundSize, float elevation) {
+        if (mBackgroundColor.getList() != backgroundColor) {
+            mBackgroundColor = new StateColor(backgroundColor);
+        }
+        if (mBoundColor.getList() != boundColor) {
+            mBoundColor = new StateColor(boundColor);
+        }
+        boolean changed = updateColors(getState());
+        if (mBoundSize != boundSize) {
+            mBoundSize = boundSize;
+            updateBounds();
+            changed = true;
+        }
+        elevation *= 2;
+        if (mCornerRadius != cornerRadius || mElevation != elevation) {
+            mCornerRadius = cornerRadius;
+            mElevation = elevation;
+            updateShadow();
+            changed = true;
+        }
+        if (changed) {
+            invalidateSelf();
+        }
+    }
+
     public float getElevation() {
         return mElevation;
     }
 
-    interface RoundRectHelper {
-        void drawRoundRect(Canvas canvas, RectF bounds, float cornerRadius, Paint paint);
+    public void setMaxElevation(float maxElevation) {
+        mMaxElevation = maxElevation * 2;
+        updateBounds();
+        invalidateSelf();
     }
 }
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hippo.cardsalon;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+
+/**
+ * Draws rounded rectangles with the cheapest primitive for the radius and the platform.
+ * <p>
+ * Prior to API 17, canvas.drawRoundRect is expensive; which is why it is drawn with 7 draw
+ * operations before 17. A rectangle without radius is always drawn with canvas.drawRect.
+ * <p>
+ * It is a final class rather than an interface, so the call in draw is monomorphic.
+ */
+final class RoundRectHelper {
+
+    /**
+     * Draws a round rect using 7 draw operations. This is faster than using
+     * canvas.drawRoundRect before JBMR1 because API 11-16 used alpha mask textures to draw
+     * shapes.
+     */
+    static final RoundRectHelper SEVEN_OPS = new RoundRectHelper(false);
+
+    /**
+     * Draws a round rect with canvas.drawRoundRect.
+     */
+    static final RoundRectHelper CANVAS = new RoundRectHelper(true);
+
+    private final boolean mUseDrawRoundRect;
+
+    // Only touched on the UI thread
+    private final RectF mCornerRect = new RectF();
+    private final RectF mRingRect = new RectF();
+
+    private RoundRectHelper(boolean useDrawRoundRect) {
+        mUseDrawRoundRect = useDrawRoundRect;
+    }
+
+    void drawRoundRect(Canvas canvas, RectF bounds, float cornerRadius, Paint paint) {
+        if (cornerRadius <= 0f) {
+            canvas.drawRect(bounds, paint);
+        } else if (mUseDrawRoundRect) {
+            canvas.drawRoundRect(bounds, cornerRadius, cornerRadius, paint);
+        } else {
+            drawSevenOps(canvas, bounds, cornerRadius, paint);
+        }
+    }
+
+    /**
+     * Returns the radius of the inner round rect of a ring, concentric with the outer one.
+     */
+    static float getInnerRadius(float cornerRadius, float size) {
+        return Math.max(0f, cornerRadius - size);
+    }
+
+    /**
+     * Draws the area between the outer and the inner round rect, so the inside can be
+     * filled without painting it twice. The inner round rect has the radius of
+     * {@link #getInnerRadius(float, float)}.
+     * <p>
+     * Without radius it is four rects. Before 17 it fills the whole outer round rect,
+     * and the inside must be drawn over it. Otherwise it is a stroked round rect, which the
+     * hardware renderer tessellates and caches by size, where an even-odd path would be
+     * rendered to a texture for every card.
+     */
+    void drawRing(Canvas canvas, RectF outer, RectF inner, float cornerRadius, Paint paint) {
+        drawRing(canvas, outer, inner, cornerRadius, paint, mRingRect);
+    }
+
+    /**
+     * Same as {@link #drawRing(Canvas, RectF, RectF, float, Paint)} with a scratch rect of
+     * the caller, for drawing off the UI thread.
+     */
+    void drawRing(Canvas canvas, RectF outer, RectF inner, float cornerRadius, Paint paint,
+            RectF scratch) {
+        float size = inner.left - outer.left;
+        if (cornerRadius <= 0f) {
+            canvas.drawRect(outer.left, outer.top, outer.right, inner.top, paint);
+            canvas.drawRect(outer.left, inner.bottom, outer.right, outer.bottom, paint);
+            canvas.drawRect(outer.left, inner.top, inner.left, inner.bottom, paint);
+            canvas.drawRect(inner.right, inner.top, outer.right, inner.bottom, paint);
+        } else if (!mUseDrawRoundRect) {
+            drawSevenOps(canvas, outer, cornerRadius, paint);
+        } else if (cornerRadius >= size) {
+            float halfSize = size / 2;
+            scratch.set(outer);
+            scratch.inset(halfSize, halfSize);
+            Paint.Style style = paint.getStyle();
+            float strokeWidth = paint.getStrokeWidth();
+            paint.setStyle(Paint.Style.STROKE);
+            paint.setStrokeWidth(size);
+            canvas.drawRoundRect(scratch, cornerRadius - halfSize, cornerRadius - halfSize, paint);
+            paint.setStyle(style);
+            paint.setStrokeWidth(strokeWidth);
+        } else {
+            // The inner corners are square and a stroke would fold over itself there,
+            // so the sides are rects and each corner a quarter circle and a rect
+            canvas.drawRect(outer.left + cornerRadius, outer.top, outer.right - cornerRadius,
+                    inner.top, paint);
+            canvas.drawRect(outer.left + cornerRadius, inner.bottom,
+                    outer.right - cornerRadius, outer.bottom, paint);
+            canvas.drawRect(outer.left, inner.top, inner.left, inner.bottom, paint);
+            canvas.drawRect(inner.right, inner.top, outer.right, inner.bottom, paint);
+
+            float diameter = cornerRadius * 2;
+            scratch.set(outer.left, outer.top, outer.left + diameter, outer.top + diameter);
+            canvas.drawArc(scratch, 180f, 90f, true, paint);
+            canvas.drawRect(outer.left, outer.top + cornerRadius, outer.left + cornerRadius,
+                    inner.top, paint);
+            scratch.offsetTo(outer.right - diameter, outer.top);
+            canvas.drawArc(scratch, 270f, 90f, true, paint);
+            canvas.drawRect(outer.right - cornerRadius, outer.top + cornerRadius, outer.right,
+                    inner.top, paint);
+            scratch.offsetTo(outer.right - diameter, outer.bottom - diameter);
+            canvas.drawArc(scratch, 0f, 90f, true, paint);
+            canvas.drawRect(outer.right - cornerRadius, inner.bottom, outer.right,
+                    outer.bottom - cornerRadius, paint);
+            scratch.offsetTo(outer.left, outer.bottom - diameter);
+            canvas.drawArc(scratch, 90f, 90f, true, paint);
+            canvas.drawRect(outer.left, inner.bottom, outer.left + cornerRadius,
+                    outer.bottom - cornerRadius, paint);
+        }
+    }
+
+    private void drawSevenOps(Canvas canvas, RectF bounds, float cornerRadius, Paint paint) {
+        final float twoRadius = cornerRadius * 2;
+        final float innerWidth = bounds.width() - twoRadius - 1;
+        final float innerHeight = bounds.height() - twoRadius - 1;
+        // increment it to account for half pixels.
+        if (cornerRadius >= 1f) {
+            cornerRadius += .5f;
+            mCornerRect.set(-cornerRadius, -cornerRadius, cornerRadius, cornerRadius);
+            int saved = canvas.save();
+            canvas.translate(bounds.left + cornerRadius, bounds.top + cornerRadius);
+            canvas.drawArc(mCornerRect, 180, 90, true, paint);
+            canvas.translate(innerWidth, 0);
+            canvas.rotate(90);
+            canvas.drawArc(mCornerRect, 180, 90, true, paint);
+            canvas.translate(innerHeight, 0);
+            canvas.rotate(90);
+            canvas.drawArc(mCornerRect, 180, 90, true, paint);
+            canvas.translate(innerWidth, 0);
+            canvas.rotate(90);
+            canvas.drawArc(mCornerRect, 180, 90, true, paint);
+            canvas.restoreToCount(saved);
+            //draw top and bottom pieces
+            canvas.drawRect(bounds.left + cornerRadius - 1f, bounds.top,
+                    bounds.right - cornerRadius + 1f, bounds.top + cornerRadius,
+                    paint);
+            canvas.drawRect(bounds.left + cornerRadius - 1f,
+                    bounds.bottom - cornerRadius + 1f, bounds.right - cornerRadius + 1f,
+                    bounds.bottom, paint);
+        }
+        // center
+        canvas.drawRect(bounds.left, bounds.top + Math.max(0, cornerRadius - 1f),
+                bounds.right, bounds.bottom - cornerRadius + 1f, paint);
+    }
+}
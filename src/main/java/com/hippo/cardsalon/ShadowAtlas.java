@@ -0,0 +1,159 @@
+package com.hippo.cardsalon;
+
+import android.graphics.Bitmap;
+import android.graphics.BlurMaskFilter;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+/**
+ * The shadow of a card rendered once into a small bitmap, laid out like a nine-patch.
+ * <p>
+ * The four corners are stored as-is and the middle row and column hold one pixel of edge
+ * shadow, which is stretched along the edges when drawing. The center is transparent.
+ * <p>
+ * A blurred atlas is one blurred round rect instead of the gradients, rendered at
+ * {@link #BLUR_SCALE} of its drawn size and scaled up with bitmap filtering.
+ */
+final class ShadowAtlas {
+
+    static final float BLUR_SCALE = 0.5f;
+
+    private final Bitmap mBitmap;
+    // Drawn size of a corner
+    private final int mCornerSize;
+    // Size of a corner in the bitmap
+    private final int mSrcCornerSize;
+
+    private ShadowAtlas(Bitmap bitmap, int cornerSize, int srcCornerSize) {
+        mBitmap = bitmap;
+        mCornerSize = cornerSize;
+        mSrcCornerSize = srcCornerSize;
+    }
+
+    static ShadowAtlas render(float cornerRadius, float elevation) {
+        int cornerSize = (int) Math.ceil(cornerRadius + elevation);
+        int size = cornerSize * 2 + 1;
+        Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+
+        Paint cornerShadowPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
+        cornerShadowPaint.setStyle(Paint.Style.FILL);
+        Paint edgeShadowPaint = new Paint(cornerShadowPaint);
+        edgeShadowPaint.setAntiAlias(false);
+
+        ShadowGeometry geometry = ShadowGeometry.obtain(cornerRadius, elevation, null);
+        geometry.apply(cornerShadowPaint, edgeShadowPaint);
+        RoundRectDrawableWithShadow.drawShadow(canvas, 0, 0, size, size, cornerRadius, elevation,
+                geometry.getCornerPath(), cornerShadowPaint, edgeShadowPaint);
+
+        return new ShadowAtlas(bitmap, cornerSize, cornerSize);
+    }
+
+    /**
+     * Render the shadow as a round rect halfway into the shadow, blurred by half the shadow
+     * size, so it fades out where the gradients end.
+     */
+    static ShadowAtlas renderBlurred(float cornerRadius, float elevation) {
+        int cornerSize = (int) Math.ceil(cornerRadius + elevation);
+        int srcCornerSize = Math.max(1, (int) Math.ceil(cornerSize * BLUR_SCALE));
+        int size = srcCornerSize * 2 + 1;
+        Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+
+        // Everything in bitmap pixels, the blur radius doesn't follow the canvas matrix everywhere
+        float scale = (float) srcCornerSize / cornerSize;
+        float inset = elevation * scale / 2;
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(RoundRectDrawableWithShadow.SHADOW_START_COLOR);
+        paint.setMaskFilter(new BlurMaskFilter(inset, BlurMaskFilter.Blur.NORMAL));
+        float radius = (cornerRadius + elevation / 2) * scale;
+        canvas.drawRoundRect(new RectF(inset, inset, size - inset, size - inset),
+                radius, radius, paint);
+
+        return new ShadowAtlas(bitmap, cornerSize, srcCornerSize);
+    }
+
+    /**
+     * Returns the byte count of the atlas for the radius and shadow size, without rendering it.
+     */
+    static int getByteCount(float cornerRadius, float elevation, boolean blurred) {
+        int cornerSize = (int) Math.ceil(cornerRadius + elevation);
+        if (blurred) {
+            cornerSize = Math.max(1, (int) Math.ceil(cornerSize * BLUR_SCALE));
+        }
+        int size = cornerSize * 2 + 1;
+        return size * size * 4;
+    }
+
+    int getByteCount() {
+        return mBitmap.getByteCount();
+    }
+
+    /**
+     * Draws the shadow around the bounds. {@code src} and {@code dst} are
+     * scratch rects, so nothing is allocated.
+     */
+    void draw(Canvas canvas, float left, float top, float right, float bottom, Paint paint,
+            Rect src, RectF dst) {
+        drawCorners(canvas, left, top, right, bottom, paint, src, dst);
+        drawEdges(canvas, left, top, right, bottom, paint, src, dst);
+    }
+
+    void drawCorners(Canvas canvas, float left, float top, float right, float bottom, Paint paint,
+            Rect src, RectF dst) {
+        final Bitmap bitmap = mBitmap;
+        final int corner = mCornerSize;
+        final int srcCorner = mSrcCornerSize;
+        final int size = bitmap.getWidth();
+        paint.setFilterBitmap(corner != srcCorner);
+
+        // LT
+        src.set(0, 0, srcCorner, srcCorner);
+        dst.set(left, top, left + corner, top + corner);
+        canvas.drawBitmap(bitmap, src, dst, paint);
+        // RT
+        src.set(srcCorner + 1, 0, size, srcCorner);
+        dst.set(right - corner, top, right, top + corner);
+        canvas.drawBitmap(bitmap, src, dst, paint);
+        // LB
+        src.set(0, srcCorner + 1, srcCorner, size);
+        dst.set(left, bottom - corner, left + corner, bottom);
+        canvas.drawBitmap(bitmap, src, dst, paint);
+        // RB
+        src.set(srcCorner + 1, srcCorner + 1, size, size);
+        dst.set(right - corner, bottom - corner, right, bottom);
+        canvas.drawBitmap(bitmap, src, dst, paint);
+    }
+
+    void drawEdges(Canvas canvas, float left, float top, float right, float bottom, Paint paint,
+            Rect src, RectF dst) {
+        final Bitmap bitmap = mBitmap;
+        final int corner = mCornerSize;
+        final int srcCorner = mSrcCornerSize;
+        final int size = bitmap.getWidth();
+        paint.setFilterBitmap(corner != srcCorner);
+
+        if (right - left - 2 * corner > 0) {
+            // T
+            src.set(srcCorner, 0, srcCorner + 1, srcCorner);
+            dst.set(left + corner, top, right - corner, top + corner);
+            canvas.drawBitmap(bitmap, src, dst, paint);
+            // B
+            src.set(srcCorner, srcCorner + 1, srcCorner + 1, size);
+            dst.set(left + corner, bottom - corner, right - corner, bottom);
+            canvas.drawBitmap(bitmap, src, dst, paint);
+        }
+        if (bottom - top - 2 * corner > 0) {
+            // L
+            src.set(0, srcCorner, srcCorner, srcCorner + 1);
+            dst.set(left, top + corner, left + corner, bottom - corner);
+            canvas.drawBitmap(bitmap, src, dst, paint);
+            // R
+            src.set(srcCorner + 1, srcCorner, size, srcCorner + 1);
+            dst.set(right - corner, top + corner, right, bottom - corner);
+            canvas.drawBitmap(bitmap, src, dst, paint);
+        }
+    }
+}
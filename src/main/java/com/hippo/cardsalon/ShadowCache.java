@@ -0,0 +1,187 @@
+package com.hippo.cardsalon;
+
+import android.util.LruCache;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A process-wide cache of card shadows.
+ * <p>
+ * The shadow of a card only depends on its corner radius and elevation, so all cards
+ * sharing them draw the same {@link ShadowAtlas} instead of building their own gradients.
+ * The cache is bounded by the byte count of the atlases it holds.
+ * <p>
+ * Prewarmed atlases are kept apart and never evicted. They are published as an immutable
+ * map, so drawing reads them without a lock.
+ */
+public final class ShadowCache {
+
+    public static final int DEFAULT_MAX_SIZE = 1024 * 1024;
+
+    private static volatile ShadowLruCache sCache = new ShadowLruCache(DEFAULT_MAX_SIZE);
+    // Copied on write, never modified once published
+    private static volatile Map<Key, ShadowAtlas> sPrewarmed = Collections.emptyMap();
+
+    private ShadowCache() {
+    }
+
+    /**
+     * Set the max byte count of the cache. All cached shadows are dropped.
+     * A size of zero or less disables the cache, cards build their own shadow then.
+     */
+    public static void setMaxSize(int maxSize) {
+        sCache = maxSize > 0 ? new ShadowLruCache(maxSize) : null;
+    }
+
+    public static int getMaxSize() {
+        ShadowLruCache cache = sCache;
+        return cache != null ? cache.maxSize() : 0;
+    }
+
+    public static int getSize() {
+        ShadowLruCache cache = sCache;
+        return cache != null ? cache.size() : 0;
+    }
+
+    public static int getHitCount() {
+        ShadowLruCache cache = sCache;
+        return cache != null ? cache.hitCount() : 0;
+    }
+
+    public static int getMissCount() {
+        ShadowLruCache cache = sCache;
+        return cache != null ? cache.missCount() : 0;
+    }
+
+    /**
+     * Drop all cached and prewarmed shadows, and the shared gradients.
+     */
+    public static void clear() {
+        ShadowLruCache cache = sCache;
+        if (cache != null) {
+            cache.evictAll();
+        }
+        synchronized (ShadowCache.class) {
+            sPrewarmed = Collections.emptyMap();
+        }
+        ShadowGeometry.clear();
+    }
+
+    /**
+     * Returns the byte count of prewarmed shadows.
+     */
+    public static int getPrewarmedSize() {
+        int size = 0;
+        for (ShadowAtlas atlas : sPrewarmed.values()) {
+            size += atlas.getByteCount();
+        }
+        return size;
+    }
+
+    /**
+     * Render the atlas for the corner radius and shadow size and keep it until
+     * {@link #clear()}. Safe to call on any thread.
+     */
+    static void prewarm(float cornerRadius, float elevation, boolean blurred) {
+        Key key = new Key().set(cornerRadius, elevation).setBlurred(blurred);
+        if (sPrewarmed.containsKey(key)) {
+            return;
+        }
+        // Render outside the lock, a race only renders an atlas twice
+        ShadowAtlas atlas = key.render();
+        synchronized (ShadowCache.class) {
+            Map<Key, ShadowAtlas> prewarmed = sPrewarmed;
+            if (!prewarmed.containsKey(key)) {
+                Map<Key, ShadowAtlas> copy = new HashMap<>(prewarmed);
+                copy.put(key, atlas);
+                sPrewarmed = copy;
+            }
+        }
+    }
+
+    /**
+     * Returns the atlas for the key, rendering it on a miss.
+     * Returns {@code null} if the cache is disabled and the atlas is not prewarmed.
+     * <p>
+     * The key is only read, so callers can reuse one key for every lookup.
+     */
+    static ShadowAtlas obtain(Key key) {
+        ShadowAtlas atlas = sPrewarmed.get(key);
+        if (atlas != null) {
+            return atlas;
+        }
+        ShadowLruCache cache = sCache;
+        if (cache == null) {
+            return null;
+        }
+        atlas = cache.get(key);
+        if (atlas == null) {
+            atlas = key.render();
+            cache.put(new Key().set(key.mCornerRadius, key.mElevation).setBlurred(key.mBlurred),
+                    atlas);
+        }
+        return atlas;
+    }
+
+    static final class Key {
+
+        private float mCornerRadius;
+        private float mElevation;
+        private boolean mBlurred;
+
+        /**
+         * Set the radius and shadow size of a gradient atlas.
+         */
+        Key set(float cornerRadius, float elevation) {
+            mCornerRadius = cornerRadius;
+            mElevation = elevation;
+            mBlurred = false;
+            return this;
+        }
+
+        Key setBlurred(boolean blurred) {
+            mBlurred = blurred;
+            return this;
+        }
+
+        private ShadowAtlas render() {
+            return mBlurred ? ShadowAtlas.renderBlurred(mCornerRadius, mElevation) :
+                    ShadowAtlas.render(mCornerRadius, mElevation);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return mCornerRadius == key.mCornerRadius && mElevation == key.mElevation &&
+                    mBlurred == key.mBlurred;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = Float.floatToIntBits(mCornerRadius);
+            result = 31 * result + Float.floatToIntBits(mElevation);
+            result = 31 * result + (mBlurred ? 1 : 0);
+            return result;
+        }
+    }
+
+    private static final class ShadowLruCache extends LruCache<Key, ShadowAtlas> {
+
+        ShadowLruCache(int maxSize) {
+            super(maxSize);
+        }
+
+        @Override
+        protected int sizeOf(Key key, ShadowAtlas value) {
+            return value.getByteCount();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.hippo.cardsalon;
+
+import android.graphics.LinearGradient;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RadialGradient;
+import android.graphics.RectF;
+import android.graphics.Shader;
+import android.util.LruCache;
+
+import com.hippo.yorozuya.MathUtils;
+
+/**
+ * The corner path and gradients of a card shadow, built once for each corner radius and
+ * shadow size and shared by all cards drawing gradients, and by the atlases rendered from them.
+ * <p>
+ * Paths and shaders are never modified once built, so cards only set them on their paints.
+ * Sharing them also lets the hardware renderer reuse its path and gradient textures.
+ */
+final class ShadowGeometry {
+
+    private static final int MAX_SIZE = 32;
+
+    private static final int[] SHADOW_COLORS = {
+            RoundRectDrawableWithShadow.SHADOW_START_COLOR,
+            RoundRectDrawableWithShadow.SHADOW_START_COLOR,
+            RoundRectDrawableWithShadow.SHADOW_HALF_COLOR,
+            RoundRectDrawableWithShadow.SHADOW_QUARTER_COLOR,
+            RoundRectDrawableWithShadow.SHADOW_END_COLOR};
+
+    // The edge stops don't depend on the size
+    private static final float[] EDGE_STOPS = buildStops(0.5f);
+
+    private static final LruCache<ShadowCache.Key, ShadowGeometry> sTable = new LruCache<>(MAX_SIZE);
+
+    private final Path mCornerPath;
+    private final Shader mCornerShader;
+    private final Shader mEdgeShader;
+
+    private ShadowGeometry(float cornerRadius, float elevation) {
+        RectF innerBounds = new RectF(-cornerRadius, -cornerRadius, cornerRadius, cornerRadius);
+        RectF outerBounds = new RectF(innerBounds);
+        outerBounds.inset(-elevation, -elevation);
+
+        mCornerPath = new Path();
+        mCornerPath.setFillType(Path.FillType.EVEN_ODD);
+        mCornerPath.moveTo(-cornerRadius, 0);
+        mCornerPath.rLineTo(-elevation, 0);
+        // outer arc
+        mCornerPath.arcTo(outerBounds, 180f, 90f, false);
+        // inner arc
+        mCornerPath.arcTo(innerBounds, 270f, -90f, false);
+        mCornerPath.close();
+
+        float startRatio = cornerRadius / (cornerRadius + elevation);
+        mCornerShader = new RadialGradient(0, 0, cornerRadius + elevation, SHADOW_COLORS,
+                buildStops(startRatio), Shader.TileMode.CLAMP);
+
+        // we offset the content shadowSize/2 pixels up to make it more realistic.
+        // this is why edge shadow shader has some extra space
+        // When drawing bottom edge shadow, we use that extra space.
+        mEdgeShader = new LinearGradient(0, -cornerRadius + elevation, 0,
+                -cornerRadius - elevation, SHADOW_COLORS, EDGE_STOPS, Shader.TileMode.CLAMP);
+    }
+
+    private static float[] buildStops(float startRatio) {
+        return new float[]{0f, startRatio,
+                MathUtils.lerp(startRatio, 1f, RoundRectDrawableWithShadow.SHADOW_HALF_SCALE),
+                MathUtils.lerp(startRatio, 1f, RoundRectDrawableWithShadow.SHADOW_QUARTER_SCALE),
+                1f};
+    }
+
+    /**
+     * Returns the geometry for the radius and shadow size, built if it isn't in the table.
+     * Safe to call from any thread.
+     *
+     * @param metrics told about shader allocations, or {@code null}
+     */
+    static ShadowGeometry obtain(float cornerRadius, float elevation, CardMetrics metrics) {
+        ShadowCache.Key key = new ShadowCache.Key().set(cornerRadius, elevation);
+        ShadowGeometry geometry = sTable.get(key);
+        if (geometry == null) {
+            geometry = new ShadowGeometry(cornerRadius, elevation);
+            sTable.put(key, geometry);
+            if (metrics != null) {
+                metrics.onShaderAllocation(2);
+            }
+        }
+        return geometry;
+    }
+
+    static void clear() {
+        sTable.evictAll();
+    }
+
+    Path getCornerPath() {
+        return mCornerPath;
+    }
+
+    /**
+     * Set the shaders on the paints of the corners and the edges.
+     */
+    void apply(Paint cornerShadowPaint, Paint edgeShadowPaint) {
+        cornerShadowPaint.setShader(mCornerShader);
+        edgeShadowPaint.setShader(mEdgeShader);
+    }
+}
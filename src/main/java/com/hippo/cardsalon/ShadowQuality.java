@@ -0,0 +1,273 @@
+package com.hippo.cardsalon;
+
+import android.annotation.TargetApi;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.view.Choreographer;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * How pre-L card shadows are drawn, from the most expensive to the cheapest.
+ * <p>
+ * Cards follow the default quality unless set per card with
+ * {@link CardHelper#setCardShadowQuality(int)}. With the automatic policy on, all cards
+ * drop one level when the app reports a fast scroll or a frame takes longer than the frame
+ * budget, and go back after {@link #REST_FRAMES} frames in a row within the budget and
+ * without fast scroll.
+ * <p>
+ * Frames are timed from the deltas of {@code Choreographer} frames, whether cards draw in
+ * them or not, as cards keep their display lists while a list scrolls. The watcher wakes
+ * up when a card draws or a fast scroll starts, and sleeps once the quality is back and
+ * frames are at rest, so an idle app isn't woken on every vsync.
+ * <p>
+ * Only touched on the UI thread.
+ */
+public final class ShadowQuality {
+
+    /**
+     * Follow the default quality.
+     */
+    public static final int DEFAULT = -1;
+    /**
+     * Gradient corners and edges, built for every card.
+     */
+    public static final int FULL = 0;
+    /**
+     * The gradients, or a blurred round rect, rendered once into a bitmap shared by cards,
+     * see {@link ShadowCache}.
+     */
+    public static final int CACHED = 1;
+    /**
+     * One translucent round rect under the card, no gradient.
+     */
+    public static final int FLAT = 2;
+    /**
+     * No shadow, the card keeps its padding so layout doesn't change.
+     */
+    public static final int NONE = 3;
+
+    public static final long DEFAULT_FRAME_BUDGET = 20 * 1000 * 1000;
+
+    // About a second at 60 fps
+    static final int REST_FRAMES = 60;
+
+    private static int sDefault = CACHED;
+    private static boolean sAutoEnabled;
+    private static long sFrameBudget = DEFAULT_FRAME_BUDGET;
+    private static boolean sFastScrolling;
+
+    // Levels cards are dropped by, 0 or 1
+    private static int sDrop;
+    private static final DropPolicy sPolicy = new DropPolicy();
+
+    private static final Set<Drawable> sDrawables =
+            Collections.newSetFromMap(new WeakHashMap<Drawable, Boolean>());
+
+    private static FrameWatcher sFrameWatcher;
+
+    private ShadowQuality() {
+    }
+
+    public static void setDefault(int quality) {
+        if (quality < FULL || quality > NONE) {
+            throw new IllegalArgumentException("Invalid shadow quality: " + quality);
+        }
+        if (sDefault != quality) {
+            sDefault = quality;
+            invalidateAll();
+        }
+    }
+
+    public static int getDefault() {
+        return sDefault;
+    }
+
+    /**
+     * Turn the automatic policy on or off. It watches frames from Jelly Bean on,
+     * before that only fast scroll drops the quality.
+     */
+    public static void setAutoEnabled(boolean enabled) {
+        sAutoEnabled = enabled;
+        if (!enabled) {
+            if (sFrameWatcher != null) {
+                sFrameWatcher.stop();
+            }
+            sPolicy.reset();
+            setDrop(0);
+        }
+    }
+
+    public static boolean isAutoEnabled() {
+        return sAutoEnabled;
+    }
+
+    /**
+     * Set the longest frame, in nanoseconds, before the automatic policy drops the quality.
+     */
+    public static void setFrameBudget(long frameBudget) {
+        sFrameBudget = frameBudget;
+    }
+
+    public static long getFrameBudget() {
+        return sFrameBudget;
+    }
+
+    /**
+     * Tell the automatic policy whether a list of cards is flung, from a scroll listener for example.
+     */
+    public static void setFastScrolling(boolean fastScrolling) {
+        sFastScrolling = fastScrolling;
+        if (!sAutoEnabled) {
+            return;
+        }
+        if (fastScrolling) {
+            sPolicy.drop();
+            setDrop(1);
+            wake();
+        } else if (!canWatchFrames()) {
+            // Nothing to wait for the rest period with
+            setDrop(0);
+        }
+    }
+
+    /**
+     * Returns the quality a card with the quality draws now.
+     */
+    static int resolve(int quality) {
+        if (quality == DEFAULT) {
+            quality = sDefault;
+        }
+        return Math.min(NONE, quality + sDrop);
+    }
+
+    static void register(Drawable drawable) {
+        sDrawables.add(drawable);
+    }
+
+    /**
+     * Called by every card drawing its shadow, only wakes the frame watcher up.
+     */
+    static void onDraw() {
+        wake();
+    }
+
+    private static boolean canWatchFrames() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+    }
+
+    private static void wake() {
+        if (sAutoEnabled && canWatchFrames()) {
+            if (sFrameWatcher == null) {
+                sFrameWatcher = new FrameWatcher();
+            }
+            sFrameWatcher.start();
+        }
+    }
+
+    private static void setDrop(int drop) {
+        if (sDrop != drop) {
+            sDrop = drop;
+            invalidateAll();
+        }
+    }
+
+    private static void invalidateAll() {
+        for (Drawable drawable : sDrawables) {
+            drawable.invalidateSelf();
+        }
+    }
+
+    /**
+     * Decides the drop from frame times, apart from the Choreographer so it can be tested.
+     */
+    static final class DropPolicy {
+
+        private long mLastFrameTime;
+        // Frames in a row within the budget and without fast scroll
+        private int mCalmFrames;
+        private int mDrop;
+
+        /**
+         * Returns the drop after the frame starting at the time.
+         */
+        int onFrame(long frameTimeNanos, long frameBudget, boolean fastScrolling) {
+            if (fastScrolling) {
+                drop();
+            } else if (mLastFrameTime != 0) {
+                if (frameTimeNanos - mLastFrameTime > frameBudget) {
+                    drop();
+                } else {
+                    mCalmFrames++;
+                    if (mDrop != 0 && mCalmFrames >= REST_FRAMES) {
+                        mDrop = 0;
+                    }
+                }
+            }
+            mLastFrameTime = frameTimeNanos;
+            return mDrop;
+        }
+
+        void drop() {
+            mDrop = 1;
+            mCalmFrames = 0;
+        }
+
+        int getDrop() {
+            return mDrop;
+        }
+
+        /**
+         * Returns true if the quality is back and frames have been calm for the rest period.
+         */
+        boolean isAtRest() {
+            return mDrop == 0 && mCalmFrames >= REST_FRAMES;
+        }
+
+        /**
+         * Forget the last frame, the next one starts after a pause and can't be timed.
+         */
+        void reset() {
+            mLastFrameTime = 0;
+            mCalmFrames = 0;
+            mDrop = 0;
+        }
+    }
+
+    /**
+     * Times every frame while awake, and goes to sleep once the policy is at rest.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static final class FrameWatcher implements Choreographer.FrameCallback {
+
+        private boolean mPosted;
+
+        void start() {
+            if (!mPosted) {
+                mPosted = true;
+                Choreographer.getInstance().postFrameCallback(this);
+            }
+        }
+
+        void stop() {
+            if (mPosted) {
+                mPosted = false;
+                Choreographer.getInstance().removeFrameCallback(this);
+            }
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            DropPolicy policy = sPolicy;
+            setDrop(policy.onFrame(frameTimeNanos, sFrameBudget, sFastScrolling));
+            if (policy.isAtRest()) {
+                mPosted = false;
+                policy.reset();
+                return;
+            }
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+}
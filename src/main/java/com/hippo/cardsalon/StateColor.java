@@ -0,0 +1,133 @@
+package com.hippo.cardsalon;
+
+import android.content.res.ColorStateList;
+import android.graphics.Color;
+
+/**
+ * A {@link ColorStateList} prepared for drawables. A list of one color is resolved once and
+ * never walks its states. A stateful list remembers the colors of the last few state sets,
+ * as a card in a list goes back and forth between the same few states.
+ * <p>
+ * A list is only stateful if it really varies: it is probed with every combination of
+ * {@link #PROBED_STATES}, as specs can't be read before M. A list which only varies on
+ * other states, like hovered or window focused, is resolved once like a list of one color.
+ * <p>
+ * Only touched on the UI thread.
+ */
+final class StateColor {
+
+    private static final int TABLE_SIZE = 4;
+
+    // States the color of a card commonly follows
+    private static final int[] PROBED_STATES = {
+            android.R.attr.state_pressed,
+            android.R.attr.state_focused,
+            android.R.attr.state_activated,
+            android.R.attr.state_selected,
+            android.R.attr.state_enabled,
+            android.R.attr.state_checked};
+
+    private static final int[] STATE_EMPTY = {};
+
+    private final ColorStateList mList;
+    private final boolean mStateful;
+    private final int mDefaultColor;
+
+    // Only created for stateful lists, state sets are copies
+    private int[][] mStates;
+    private int[] mColors;
+    private int mCount;
+    private int mNext;
+
+    StateColor(ColorStateList list) {
+        mList = list;
+        if (list.isStateful()) {
+            mDefaultColor = list.getColorForState(STATE_EMPTY, list.getDefaultColor());
+            mStateful = varies(list, mDefaultColor);
+        } else {
+            mDefaultColor = list.getDefaultColor();
+            mStateful = false;
+        }
+    }
+
+    /**
+     * Returns true if a combination of the probed states resolves to another color than
+     * the empty state set.
+     */
+    private static boolean varies(ColorStateList list, int color) {
+        final int count = PROBED_STATES.length;
+        for (int mask = 1; mask < 1 << count; mask++) {
+            int[] state = new int[Integer.bitCount(mask)];
+            for (int i = 0, j = 0; i < count; i++) {
+                if ((mask & (1 << i)) != 0) {
+                    state[j++] = PROBED_STATES[i];
+                }
+            }
+            if (list.getColorForState(state, color) != color) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    ColorStateList getList() {
+        return mList;
+    }
+
+    boolean isStateful() {
+        return mStateful;
+    }
+
+    int getColor(int[] state) {
+        if (!mStateful) {
+            return mDefaultColor;
+        }
+
+        if (mStates == null) {
+            mStates = new int[TABLE_SIZE][];
+            mColors = new int[TABLE_SIZE];
+        }
+        final int[][] states = mStates;
+        for (int i = 0; i < mCount; i++) {
+            if (equals(states[i], state)) {
+                return mColors[i];
+            }
+        }
+
+        int color = mList.getColorForState(state, Color.WHITE);
+        int index = mNext;
+        int[] copy = states[index];
+        if (copy == null || copy.length != state.length) {
+            copy = new int[state.length];
+            states[index] = copy;
+        }
+        System.arraycopy(state, 0, copy, 0, state.length);
+        mColors[index] = color;
+        mNext = (index + 1) % TABLE_SIZE;
+        mCount = Math.max(mCount, index + 1);
+        return color;
+    }
+
+    /**
+     * Returns the color with its alpha scaled by the alpha of a drawable.
+     */
+    static int modulateAlpha(int color, int alpha) {
+        if (alpha == 0xff) {
+            return color;
+        }
+        int colorAlpha = color >>> 24;
+        return (colorAlpha * (alpha + (alpha >> 7)) >> 8) << 24 | (color & 0xffffff);
+    }
+
+    private static boolean equals(int[] a, int[] b) {
+        if (a.length != b.length) {
+            return false;
+        }
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}